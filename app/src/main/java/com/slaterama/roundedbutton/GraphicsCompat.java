@@ -3,13 +3,43 @@ package com.slaterama.roundedbutton;
 import android.annotation.TargetApi;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.RectF;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class GraphicsCompat {
 
+	/**
+	 * Draws round rects using the implementation best suited to the platform version.
+	 */
+	public static final int ROUND_RECT_MODE_DEFAULT = 0;
+
+	/**
+	 * Draws round rects as four arcs and three rects.
+	 */
+	public static final int ROUND_RECT_MODE_ARCS = 1;
+
+	/**
+	 * Draws round rects as a single path, reusing cached paths for recently drawn sizes.
+	 */
+	public static final int ROUND_RECT_MODE_CACHED_PATH = 2;
+
+	/**
+	 * Draws round rects with {@link Canvas#drawRoundRect}.
+	 */
+	public static final int ROUND_RECT_MODE_NATIVE = 3;
+
+	/**
+	 * The number of floats describing each round rect passed to {@link #drawRoundRects}.
+	 */
+	public static final int ROUND_RECT_STRIDE = 6;
+
 	private GraphicsCompat() {
 	}
 
@@ -18,6 +48,8 @@ public class GraphicsCompat {
 		                   @Nullable Paint paint);
 		void drawRoundRect(@NonNull Canvas canvas, float left, float top, float right, float bottom,
 		                   float rx, float ry, @NonNull Paint paint);
+		void drawRoundRects(@NonNull Canvas canvas, @NonNull float[] rects, int offset, int count,
+		                    @NonNull Paint paint);
 	}
 
 	static class BaseGraphicsImpl implements GraphicsImpl {
@@ -26,44 +58,182 @@ public class GraphicsCompat {
 		@Override
 		public void drawRoundRect(@NonNull Canvas canvas, @Nullable RectF rect, float rx, float ry,
 		                          @Nullable Paint paint) {
+			if (rect != null) {
+				drawRoundRect(canvas, rect.left, rect.top, rect.right, rect.bottom, rx, ry, paint);
+			}
+		}
+
+		@Override
+		public void drawRoundRect(@NonNull Canvas canvas, float left, float top, float right,
+		                          float bottom, float rx, float ry, @NonNull Paint paint) {
+			drawArcs(canvas, left, top, right, bottom, rx, ry, paint);
+		}
+
+		@Override
+		public void drawRoundRects(@NonNull Canvas canvas, @NonNull float[] rects, int offset,
+		                           int count, @NonNull Paint paint) {
+			for (int i = 0, index = offset; i < count; i++, index += ROUND_RECT_STRIDE) {
+				drawArcs(canvas, rects[index], rects[index + 1], rects[index + 2],
+						rects[index + 3], rects[index + 4], rects[index + 5], paint);
+			}
+		}
+
+		private void drawArcs(Canvas canvas, float left, float top, float right, float bottom,
+		                      float rx, float ry, Paint paint) {
 			// Draws a round rect using 7 draw operations. This is faster than using
 			// canvas.drawRoundRect before JBMR1 because API 11-16 used alpha mask textures to draw
 			// shapes.
+			final float twoRx = rx * 2;
+			final float twoRy = ry * 2;
+			final float innerWidth = right - left - twoRx;
+			final float innerHeight = bottom - top - twoRy;
+			mCornerRect.set(left, top, left + twoRx, top + twoRy);
+
+			canvas.drawArc(mCornerRect, 180, 90, true, paint);
+			mCornerRect.offset(innerWidth, 0);
+			canvas.drawArc(mCornerRect, 270, 90, true, paint);
+			mCornerRect.offset(0, innerHeight);
+			canvas.drawArc(mCornerRect, 0, 90, true, paint);
+			mCornerRect.offset(-innerWidth, 0);
+			canvas.drawArc(mCornerRect, 90, 90, true, paint);
+
+			//draw top and bottom pieces
+			canvas.drawRect(left + rx, top, right - rx, top + ry, paint);
+			canvas.drawRect(left + rx, bottom - ry, right - rx, bottom, paint);
+
+			//center
+			canvas.drawRect(left, (float) Math.floor(top + ry), right,
+					(float) Math.ceil(bottom - ry), paint);
+		}
+	}
+
+	static class CachedPathGraphicsImpl implements GraphicsImpl {
+		static final int DEFAULT_MAX_SIZE = 16;
+
+		private final PathKey mLookupKey = new PathKey();
+		private int mMaxSize = DEFAULT_MAX_SIZE;
+		private long mHitCount;
+		private long mMissCount;
+		private long mEvictionCount;
+
+		private final LinkedHashMap<PathKey, Path> mCache =
+				new LinkedHashMap<PathKey, Path>(16, 0.75f, true) {
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<PathKey, Path> eldest) {
+						if (size() > mMaxSize) {
+							mEvictionCount++;
+							return true;
+						}
+						return false;
+					}
+				};
+
+		@Override
+		public void drawRoundRect(@NonNull Canvas canvas, @Nullable RectF rect, float rx, float ry,
+		                          @Nullable Paint paint) {
 			if (rect != null) {
-				final float twoRx = rx * 2;
-				final float twoRy = ry * 2;
-				final float innerWidth = rect.width() - twoRx;
-				final float innerHeight = rect.height() - twoRy;
-				mCornerRect.set(rect.left, rect.top, rect.left + twoRx, rect.top + twoRy);
-
-				canvas.drawArc(mCornerRect, 180, 90, true, paint);
-				mCornerRect.offset(innerWidth, 0);
-				canvas.drawArc(mCornerRect, 270, 90, true, paint);
-				mCornerRect.offset(0, innerHeight);
-				canvas.drawArc(mCornerRect, 0, 90, true, paint);
-				mCornerRect.offset(-innerWidth, 0);
-				canvas.drawArc(mCornerRect, 90, 90, true, paint);
-
-				//draw top and bottom pieces
-				canvas.drawRect(rect.left + rx, rect.top, rect.right - rx, rect.top + ry, paint);
-				canvas.drawRect(rect.left + rx, rect.bottom - ry, rect.right - rx, rect.bottom,
-						paint);
-
-				//center
-				canvas.drawRect(rect.left, (float) Math.floor(rect.top + ry), rect.right,
-						(float) Math.ceil(rect.bottom - ry), paint);
+				drawRoundRect(canvas, rect.left, rect.top, rect.right, rect.bottom, rx, ry, paint);
 			}
 		}
 
 		@Override
 		public void drawRoundRect(@NonNull Canvas canvas, float left, float top, float right,
 		                          float bottom, float rx, float ry, @NonNull Paint paint) {
-			drawRoundRect(canvas, new RectF(left, top, right, bottom), rx, ry, paint);
+			drawPath(canvas, left, top, right, bottom, rx, ry, paint);
+		}
+
+		@Override
+		public void drawRoundRects(@NonNull Canvas canvas, @NonNull float[] rects, int offset,
+		                           int count, @NonNull Paint paint) {
+			for (int i = 0, index = offset; i < count; i++, index += ROUND_RECT_STRIDE) {
+				drawPath(canvas, rects[index], rects[index + 1], rects[index + 2],
+						rects[index + 3], rects[index + 4], rects[index + 5], paint);
+			}
+		}
+
+		private void drawPath(Canvas canvas, float left, float top, float right, float bottom,
+		                      float rx, float ry, Paint paint) {
+			// Paths are built at the origin so that equally sized round rects share a path.
+			Path path = getPath(right - left, bottom - top, rx, ry);
+			canvas.translate(left, top);
+			canvas.drawPath(path, paint);
+			canvas.translate(-left, -top);
+		}
+
+		private Path getPath(float width, float height, float rx, float ry) {
+			mLookupKey.set(width, height, rx, ry);
+			Path path = mCache.get(mLookupKey);
+			if (path != null) {
+				mHitCount++;
+				return path;
+			}
+			mMissCount++;
+			path = new Path();
+			path.addRoundRect(new RectF(0, 0, width, height), rx, ry, Path.Direction.CW);
+			mCache.put(new PathKey(mLookupKey), path);
+			return path;
+		}
+
+		void setMaxSize(int maxSize) {
+			mMaxSize = maxSize;
+			Iterator<PathKey> iterator = mCache.keySet().iterator();
+			while (mCache.size() > mMaxSize && iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+				mEvictionCount++;
+			}
+		}
+	}
+
+	private static final class PathKey {
+		private float mWidth;
+		private float mHeight;
+		private float mRx;
+		private float mRy;
+
+		PathKey() {
+		}
+
+		PathKey(PathKey other) {
+			set(other.mWidth, other.mHeight, other.mRx, other.mRy);
+		}
+
+		void set(float width, float height, float rx, float ry) {
+			mWidth = width;
+			mHeight = height;
+			mRx = rx;
+			mRy = ry;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof PathKey)) {
+				return false;
+			}
+			PathKey other = (PathKey) o;
+			return Float.floatToIntBits(mWidth) == Float.floatToIntBits(other.mWidth)
+					&& Float.floatToIntBits(mHeight) == Float.floatToIntBits(other.mHeight)
+					&& Float.floatToIntBits(mRx) == Float.floatToIntBits(other.mRx)
+					&& Float.floatToIntBits(mRy) == Float.floatToIntBits(other.mRy);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = Float.floatToIntBits(mWidth);
+			result = 31 * result + Float.floatToIntBits(mHeight);
+			result = 31 * result + Float.floatToIntBits(mRx);
+			result = 31 * result + Float.floatToIntBits(mRy);
+			return result;
 		}
 	}
 
 	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
 	static class JellybeanMr1GraphicsImpl implements GraphicsImpl {
+		private final RectF mRect = new RectF();
+
 		@Override
 		public void drawRoundRect(@NonNull Canvas canvas, @Nullable RectF rect, float rx, float ry,
 		                          @Nullable Paint paint) {
@@ -73,7 +243,18 @@ public class GraphicsCompat {
 		@Override
 		public void drawRoundRect(@NonNull Canvas canvas, float left, float top, float right,
 		                          float bottom, float rx, float ry, @NonNull Paint paint) {
-			canvas.drawRoundRect(new RectF(left, top, right, bottom), rx, ry, paint);
+			mRect.set(left, top, right, bottom);
+			canvas.drawRoundRect(mRect, rx, ry, paint);
+		}
+
+		@Override
+		public void drawRoundRects(@NonNull Canvas canvas, @NonNull float[] rects, int offset,
+		                           int count, @NonNull Paint paint) {
+			final RectF rect = mRect;
+			for (int i = 0, index = offset; i < count; i++, index += ROUND_RECT_STRIDE) {
+				rect.set(rects[index], rects[index + 1], rects[index + 2], rects[index + 3]);
+				canvas.drawRoundRect(rect, rects[index + 4], rects[index + 5], paint);
+			}
 		}
 	}
 
@@ -84,27 +265,124 @@ public class GraphicsCompat {
 		                          float bottom, float rx, float ry, @NonNull Paint paint) {
 			canvas.drawRoundRect(left, top, right, bottom, rx, ry, paint);
 		}
+
+		@Override
+		public void drawRoundRects(@NonNull Canvas canvas, @NonNull float[] rects, int offset,
+		                           int count, @NonNull Paint paint) {
+			for (int i = 0, index = offset; i < count; i++, index += ROUND_RECT_STRIDE) {
+				canvas.drawRoundRect(rects[index], rects[index + 1], rects[index + 2],
+						rects[index + 3], rects[index + 4], rects[index + 5], paint);
+			}
+		}
 	}
 
-	static final GraphicsImpl IMPL;
+	static GraphicsImpl sImpl;
+	static int sRoundRectMode;
+	static CachedPathGraphicsImpl sCachedPathImpl;
 	static {
+		setRoundRectMode(ROUND_RECT_MODE_DEFAULT);
+	}
+
+	static GraphicsImpl newGraphicsImpl(int roundRectMode) {
 		final int version = Build.VERSION.SDK_INT;
-		if (version >= Build.VERSION_CODES.LOLLIPOP) {
-			IMPL = new LollipopGraphicsImpl();
-		} else if (version >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-			IMPL = new JellybeanMr1GraphicsImpl();
-		} else {
-			IMPL = new BaseGraphicsImpl();
+		switch (roundRectMode) {
+			case ROUND_RECT_MODE_ARCS:
+				return new BaseGraphicsImpl();
+			case ROUND_RECT_MODE_CACHED_PATH:
+				if (sCachedPathImpl == null) {
+					sCachedPathImpl = new CachedPathGraphicsImpl();
+				}
+				return sCachedPathImpl;
+			case ROUND_RECT_MODE_NATIVE:
+				if (version >= Build.VERSION_CODES.LOLLIPOP) {
+					return new LollipopGraphicsImpl();
+				} else {
+					return new JellybeanMr1GraphicsImpl();
+				}
+			case ROUND_RECT_MODE_DEFAULT:
+				if (version >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+					return newGraphicsImpl(ROUND_RECT_MODE_NATIVE);
+				} else {
+					return newGraphicsImpl(ROUND_RECT_MODE_ARCS);
+				}
+			default:
+				throw new IllegalArgumentException("Unknown round rect mode " + roundRectMode);
+		}
+	}
+
+	/**
+	 * Returns the mode used to draw round rects.
+	 */
+	public static int getRoundRectMode() {
+		return sRoundRectMode;
+	}
+
+	/**
+	 * Sets how round rects are drawn. Round rects are drawn with {@link Canvas#drawRoundRect}
+	 * on Jellybean MR1 and above, and as four arcs and three rects before that, unless a
+	 * different mode is set here.
+	 * @param roundRectMode One of {@link #ROUND_RECT_MODE_DEFAULT},
+	 *                      {@link #ROUND_RECT_MODE_ARCS},
+	 *                      {@link #ROUND_RECT_MODE_CACHED_PATH} or
+	 *                      {@link #ROUND_RECT_MODE_NATIVE}.
+	 * @see GraphicsCompatCalibrator
+	 */
+	public static void setRoundRectMode(int roundRectMode) {
+		sImpl = newGraphicsImpl(roundRectMode);
+		sRoundRectMode = roundRectMode;
+	}
+
+	/**
+	 * Sets the maximum number of paths kept by {@link #ROUND_RECT_MODE_CACHED_PATH}.
+	 */
+	public static void setPathCacheMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least 1");
+		}
+		if (sCachedPathImpl == null) {
+			sCachedPathImpl = new CachedPathGraphicsImpl();
 		}
+		sCachedPathImpl.setMaxSize(maxSize);
+	}
+
+	public static int getPathCacheSize() {
+		return (sCachedPathImpl == null ? 0 : sCachedPathImpl.mCache.size());
+	}
+
+	public static long getPathCacheHitCount() {
+		return (sCachedPathImpl == null ? 0L : sCachedPathImpl.mHitCount);
+	}
+
+	public static long getPathCacheMissCount() {
+		return (sCachedPathImpl == null ? 0L : sCachedPathImpl.mMissCount);
+	}
+
+	public static long getPathCacheEvictionCount() {
+		return (sCachedPathImpl == null ? 0L : sCachedPathImpl.mEvictionCount);
 	}
 
 	public static void drawRoundRect(@NonNull Canvas canvas, @Nullable RectF rect, float rx,
 	                                 float ry, @Nullable Paint paint) {
-		IMPL.drawRoundRect(canvas, rect, rx, ry, paint);
+		sImpl.drawRoundRect(canvas, rect, rx, ry, paint);
 	}
 
 	public static void drawRoundRect(@NonNull Canvas canvas, float left, float top, float right,
 	                                 float bottom, float rx, float ry, @Nullable Paint paint) {
-		IMPL.drawRoundRect(canvas, left, top, right, bottom, rx, ry, paint);
+		sImpl.drawRoundRect(canvas, left, top, right, bottom, rx, ry, paint);
+	}
+
+	/**
+	 * Draws a batch of round rects with the same paint.
+	 * @param rects The round rects to draw, packed as left, top, right, bottom, rx and ry for
+	 *              each round rect.
+	 * @param offset The index in {@code rects} of the first round rect to draw.
+	 * @param count The number of round rects to draw.
+	 */
+	public static void drawRoundRects(@NonNull Canvas canvas, @NonNull float[] rects, int offset,
+	                                  int count, @NonNull Paint paint) {
+		if (offset < 0 || count < 0 || offset + count * ROUND_RECT_STRIDE > rects.length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		sImpl.drawRoundRects(canvas, rects, offset, count, paint);
 	}
 }
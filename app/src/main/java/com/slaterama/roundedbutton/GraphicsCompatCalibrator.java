@@ -0,0 +1,208 @@
+package com.slaterama.roundedbutton;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Build;
+import android.view.Window;
+import android.view.WindowManager;
+
+/**
+ * Chooses the {@link GraphicsCompat} round rect mode for software rendering by timing each
+ * mode against an offscreen software canvas. The winner is saved per device fingerprint, so
+ * the timing only runs again after a system update or when the saved result is cleared.
+ *
+ * <p>Calibration only covers software rendering. Its timings say nothing about hardware
+ * accelerated rendering, which records draw operations and replays them on the GPU later, and
+ * which is on by default for applications targeting API 14 and up. Hardware accelerated
+ * windows are therefore left on {@link GraphicsCompat#ROUND_RECT_MODE_DEFAULT}. Applications
+ * that know another mode draws faster on the GPUs they target can choose it with
+ * {@link #setOverrideMode(int)}.</p>
+ */
+public final class GraphicsCompatCalibrator {
+
+	/**
+	 * Indicates that no override mode is set.
+	 */
+	public static final int NO_OVERRIDE = -1;
+
+	static final String PREFS_NAME = "com.slaterama.roundedbutton.GraphicsCompat";
+	static final String KEY_FINGERPRINT = "fingerprint";
+	static final String KEY_ROUND_RECT_MODE = "round_rect_mode";
+
+	private static final int[] CANDIDATE_MODES = new int[]{
+			GraphicsCompat.ROUND_RECT_MODE_ARCS,
+			GraphicsCompat.ROUND_RECT_MODE_CACHED_PATH,
+			GraphicsCompat.ROUND_RECT_MODE_NATIVE
+	};
+
+	// The first run of each mode warms it up and is not counted.
+	private static final int CALIBRATION_RUNS = 6;
+	private static final int DRAWS_PER_RUN = 64;
+	private static final int CANVAS_SIZE = 192;
+
+	private static int sOverrideMode = NO_OVERRIDE;
+
+	private GraphicsCompatCalibrator() {
+	}
+
+	/**
+	 * Sets a round rect mode that {@link #calibrate(Context)} applies instead of timing or
+	 * loading a saved result. This is the only way for {@link #calibrate(Context)} to choose a
+	 * mode other than the default for hardware accelerated windows.
+	 * @param roundRectMode One of the {@code GraphicsCompat.ROUND_RECT_MODE_*} constants, or
+	 *                      {@link #NO_OVERRIDE} to calibrate as usual.
+	 */
+	public static void setOverrideMode(int roundRectMode) {
+		sOverrideMode = roundRectMode;
+	}
+
+	public static int getOverrideMode() {
+		return sOverrideMode;
+	}
+
+	/**
+	 * Applies the override mode if one is set. Otherwise applies the default mode if the
+	 * context's window is hardware accelerated, as the software timings do not apply to it;
+	 * see {@link #setOverrideMode(int)}. Otherwise applies the mode saved for this device,
+	 * timing each mode first if none has been saved. Timing takes a few milliseconds; call this
+	 * from the main thread, for example in {@code Application.onCreate()}. An application
+	 * context is treated as hardware accelerated if the application's hardwareAccelerated flag
+	 * is set.
+	 * @return The round rect mode now in use.
+	 */
+	public static int calibrate(Context context) {
+		if (sOverrideMode != NO_OVERRIDE) {
+			GraphicsCompat.setRoundRectMode(sOverrideMode);
+			LogEx.i("Using override round rect mode %d", sOverrideMode);
+			return sOverrideMode;
+		}
+
+		if (isHardwareAccelerated(context)) {
+			GraphicsCompat.setRoundRectMode(GraphicsCompat.ROUND_RECT_MODE_DEFAULT);
+			LogEx.i("Hardware accelerated, using default round rect mode");
+			return GraphicsCompat.ROUND_RECT_MODE_DEFAULT;
+		}
+
+		SharedPreferences prefs = getPreferences(context);
+		if (Build.FINGERPRINT.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+			int savedMode = prefs.getInt(KEY_ROUND_RECT_MODE,
+					GraphicsCompat.ROUND_RECT_MODE_DEFAULT);
+			GraphicsCompat.setRoundRectMode(savedMode);
+			LogEx.i("Using saved round rect mode %d", savedMode);
+			return savedMode;
+		}
+
+		int fastestMode = measureFastestMode();
+		prefs.edit()
+				.putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+				.putInt(KEY_ROUND_RECT_MODE, fastestMode)
+				.commit();
+		GraphicsCompat.setRoundRectMode(fastestMode);
+		return fastestMode;
+	}
+
+	/**
+	 * Clears the saved result so that the next call to {@link #calibrate(Context)} times each
+	 * mode again.
+	 */
+	public static void clearCalibration(Context context) {
+		getPreferences(context).edit().clear().commit();
+	}
+
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static boolean isHardwareAccelerated(Context context) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+			return false;
+		}
+		if (context instanceof Activity) {
+			Window window = ((Activity) context).getWindow();
+			if (window != null) {
+				return (window.getAttributes().flags &
+						WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED) != 0;
+			}
+		}
+		ApplicationInfo info = context.getApplicationInfo();
+		return info != null && (info.flags & ApplicationInfo.FLAG_HARDWARE_ACCELERATED) != 0;
+	}
+
+	private static SharedPreferences getPreferences(Context context) {
+		return context.getApplicationContext().getSharedPreferences(PREFS_NAME,
+				Context.MODE_PRIVATE);
+	}
+
+	static int measureFastestMode() {
+		final Bitmap bitmap;
+		try {
+			bitmap = Bitmap.createBitmap(CANVAS_SIZE, CANVAS_SIZE, Bitmap.Config.ARGB_8888);
+		} catch (OutOfMemoryError e) {
+			if (LogEx.isLoggable(LogEx.WARN)) {
+				LogEx.w("Could not allocate a calibration bitmap", e);
+			}
+			return GraphicsCompat.ROUND_RECT_MODE_DEFAULT;
+		}
+		final Canvas canvas = new Canvas(bitmap);
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(0xff2196f3);
+
+		// Calibrate with private implementations so that the ones in use are left untouched.
+		final GraphicsCompat.GraphicsImpl[] impls =
+				new GraphicsCompat.GraphicsImpl[CANDIDATE_MODES.length];
+		final long[] bestTimes = new long[CANDIDATE_MODES.length];
+		for (int i = 0; i < CANDIDATE_MODES.length; i++) {
+			impls[i] = (CANDIDATE_MODES[i] == GraphicsCompat.ROUND_RECT_MODE_CACHED_PATH ?
+					new GraphicsCompat.CachedPathGraphicsImpl() :
+					GraphicsCompat.newGraphicsImpl(CANDIDATE_MODES[i]));
+			bestTimes[i] = Long.MAX_VALUE;
+		}
+
+		// Interleave the modes so that they share any change in clock speed or load.
+		for (int run = 0; run < CALIBRATION_RUNS; run++) {
+			for (int i = 0; i < impls.length; i++) {
+				long elapsed = timeDraws(impls[i], canvas, paint);
+				if (run > 0) {
+					bestTimes[i] = Math.min(bestTimes[i], elapsed);
+				}
+			}
+		}
+		bitmap.recycle();
+
+		int fastest = 0;
+		for (int i = 1; i < bestTimes.length; i++) {
+			if (bestTimes[i] < bestTimes[fastest]) {
+				fastest = i;
+			}
+		}
+		if (LogEx.isLoggable(LogEx.INFO)) {
+			StringBuilder builder = new StringBuilder("Calibrated round rect mode ")
+					.append(CANDIDATE_MODES[fastest]).append(" (");
+			for (int i = 0; i < bestTimes.length; i++) {
+				if (i > 0) {
+					builder.append(", ");
+				}
+				builder.append("mode ").append(CANDIDATE_MODES[i]).append(": ")
+						.append(bestTimes[i] / 1000L).append("us");
+			}
+			LogEx.i(builder.append(')').toString());
+		}
+		return CANDIDATE_MODES[fastest];
+	}
+
+	private static long timeDraws(GraphicsCompat.GraphicsImpl impl, Canvas canvas,
+	                              Paint paint) {
+		final long start = System.nanoTime();
+		for (int i = 0; i < DRAWS_PER_RUN; i++) {
+			// Cycle through a few sizes and radii, as a screen of buttons would.
+			final float inset = (i % 4) * 8.0f;
+			final float radius = 4.0f + (i % 8) * 8.0f;
+			impl.drawRoundRect(canvas, inset, inset, CANVAS_SIZE - inset, CANVAS_SIZE - inset,
+					radius, radius, paint);
+		}
+		return System.nanoTime() - start;
+	}
+}
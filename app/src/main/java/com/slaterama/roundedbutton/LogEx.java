@@ -1,8 +1,23 @@
 package com.slaterama.roundedbutton;
 
+import android.support.v4.os.TraceCompat;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * API for sending log output with class, method and other metadata automatically included.
  *
@@ -17,9 +32,33 @@ import android.util.Log;
  * <p>LogEx allows for the automatic formatting of Log tag and message parameters
  * into a uniform format, and also simplifies the Logging experience by allowing
  * metadata such as class name, file name, method name, line number, etc. to
- * automatically be embedded into every Log call. This can be an expensive process
- * so be sure to call {@link #isLoggable(int)} before every log request. This will allow
- * calls to be programmatically filtered out at via the {@link #setLogLevel(int)} method.</p>
+ * automatically be embedded into every Log call. This can be an expensive process, so every
+ * logging method first checks {@link #isLoggable(int)} and returns 0 without capturing the
+ * stack if the level has been filtered out via the {@link #setLogLevel(int)} method. Calling
+ * {@link #isLoggable(int)} yourself is then only needed to avoid building message strings
+ * that would not be logged, which the overloads taking a format and arguments or a
+ * {@link MessageSupplier} do for you.</p>
+ *
+ * <p>Levels can be set for single tags and packages with {@link #setTagLevel(String, int)} and
+ * {@link #setPackageLevel(String, int)}, and are read from the log.tag system properties as for
+ * {@link android.util.Log#isLoggable(String, int)}. They are resolved into a table that is
+ * cached, and refreshed by {@link #refreshLevels()} rather than on every call.</p>
+ *
+ * <p>Logging can also be made asynchronous with {@link #startAsync(int)}, so that the calling
+ * thread only captures each record into a ring buffer and a background thread formats and
+ * writes it.</p>
+ *
+ * <p>Besides the log, records can be written to any number of {@link LogSink sinks}, such as a
+ * {@link MappedLogSink} that keeps recent history in a file.</p>
+ *
+ * <p>Call sites that log too often can be rate limited and sampled with
+ * {@link #setRateLimit(int, float, int)} and {@link #setSampleProbability(int, float)}, so that
+ * logging from drawing and layout code does not flood the log.</p>
+ *
+ * <p>Hot paths can be measured in the field with {@link Section timed sections} and
+ * {@link Counter counters}, which are dumped to the log by {@link #dumpMetrics()}. Timed
+ * sections are also emitted as {@link android.os.Trace} sections, so that they show up in
+ * systrace.</p>
  */
 public final class LogEx {
 
@@ -32,6 +71,16 @@ public final class LogEx {
 	 */
 	private static final String LOG_CLASSNAME = LogEx.class.getName();
 
+	/**
+	 * The default maximum number of call sites kept by the call site cache.
+	 */
+	public static final int DEFAULT_CALL_SITE_CACHE_SIZE = 256;
+
+	/**
+	 * The value used for names that could not be resolved.
+	 */
+	private static final String UNKNOWN = "[Unknown]";
+
 	/**
 	 * Priority constant for the println method; use LogEx.v.
 	 */
@@ -62,42 +111,228 @@ public final class LogEx {
 	 */
 	public static final int ASSERT = Log.ASSERT;
 
+	/**
+	 * A level above all priorities, for suppressing every record from a tag or package.
+	 * @see #setTagLevel(String, int)
+	 */
+	public static final int SUPPRESS = ASSERT + 1;
+
+	/**
+	 * The level of a tag whose log.tag system property is not set.
+	 */
+	private static final int NO_LEVEL = -1;
+
+	/**
+	 * The maximum number of tags whose log.tag system properties are cached.
+	 */
+	private static final int MAX_SYSTEM_LEVEL_TAGS = 256;
+
+	/**
+	 * The maximum number of call sites whose rate limiters are kept.
+	 */
+	private static final int MAX_RATE_LIMITED_SITES = 1024;
+
+	/**
+	 * The tag that metrics are dumped with.
+	 */
+	private static final String METRICS_TAG = "LogEx";
+
+	/**
+	 * The number of buckets in the histogram of each timed section. Bucket i counts times from
+	 * 2^(i-1) up to 2^i nanoseconds, and bucket 0 counts times of 0.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 64;
+
+	/**
+	 * The maximum length of a {@link android.os.Trace} section name.
+	 */
+	private static final int MAX_TRACE_NAME_LENGTH = 127;
+
+	/**
+	 * Overflow policy for asynchronous logging: records logged while the buffer is full are
+	 * dropped.
+	 */
+	public static final int OVERFLOW_DROP = 0;
+
+	/**
+	 * Overflow policy for asynchronous logging: logging calls made while the buffer is full
+	 * wait until the background thread has made room. Records logged by a sink while the
+	 * buffer is full are dropped, as the background thread cannot wait for itself.
+	 */
+	public static final int OVERFLOW_BLOCK = 1;
+
+	/**
+	 * Overflow policy for asynchronous logging: once the buffer is half full only one record
+	 * in every {@link #setSampleRate(int) sample rate} records is kept, and records logged while
+	 * the buffer is full are dropped.
+	 */
+	public static final int OVERFLOW_SAMPLE = 2;
+
+	/**
+	 * The default number of records held by the asynchronous logging buffer.
+	 */
+	public static final int DEFAULT_ASYNC_CAPACITY = 1024;
+
+	/**
+	 * The maximum number of records held by the asynchronous logging buffer.
+	 */
+	public static final int MAX_ASYNC_CAPACITY = 1 << 20;
+
+	/**
+	 * The default sample rate used by {@link #OVERFLOW_SAMPLE}.
+	 */
+	public static final int DEFAULT_SAMPLE_RATE = 8;
+
+	/**
+	 * How long a logging call waits before checking again for room under {@link #OVERFLOW_BLOCK}.
+	 */
+	private static final long BLOCK_WAIT_NANOS = 100000L;
+
+	/**
+	 * How long {@link #flush()} waits before checking again whether its records were written.
+	 */
+	private static final long FLUSH_WAIT_NANOS = 1000000L;
+
+	/**
+	 * A rate that does not limit records.
+	 * @see #setRateLimit(int, float, int)
+	 */
+	public static final float UNLIMITED = Float.POSITIVE_INFINITY;
+
+	/**
+	 * The default interval between summaries of suppressed records, in milliseconds.
+	 */
+	public static final long DEFAULT_SUPPRESSION_SUMMARY_INTERVAL = 10000L;
+
 	/*
 	 * Static variables
 	 */
 
 	/**
-	 * The current logging level.
+	 * The global level, the levels set for tags and packages and the levels read from the
+	 * log.tag system properties, resolved into a single table. Replaced rather than modified.
 	 *
 	 * @see #isLoggable(int)
 	 */
-	private static int sLogLevel = INFO;
+	private static volatile LevelTable sLevels = new LevelTable(INFO,
+			new HashMap<String, Integer>(), new HashMap<String, Integer>(),
+			new HashMap<String, Integer>());
 
 	/**
-	 * The format that will be used to generate Log tags.
+	 * The timer that refreshes the system property levels, or null if they are only refreshed
+	 * by {@link #refreshLevels()}. Guarded by the LogEx class.
 	 */
-	private static String sTagFormat = "%s";
+	private static Timer sLevelRefreshTimer;
 
-	/**
-	 * The arguments that will be used to generate Log tags.
-	 */
-	private static Object[] sTagArgs = new Object[]{Placeholder.SIMPLE_CLASS_NAME};
+	private static long sLevelRefreshIntervalMillis;
 
 	/**
-	 * The format that will be used to generate Log messages.
+	 * The compiled format and arguments that will be used to generate Log tags.
 	 */
-	private static String sMessageFormat = "%s(%s:%d) %s";
+	private static volatile Template sTagTemplate =
+			Template.compile("%s", Placeholder.SIMPLE_CLASS_NAME);
 
 	/**
-	 * The arguments that will be used to generate Log messages.
+	 * The compiled format and arguments that will be used to generate Log messages.
 	 */
-	private static Object[] sMessageArgs = new Object[]{
+	private static volatile Template sMessageTemplate = Template.compile("%s(%s:%d) %s",
 			Placeholder.METHOD_NAME,
 			Placeholder.FILE_NAME,
 			Placeholder.LINE_NUMBER,
-			Placeholder.MESSAGE
+			Placeholder.MESSAGE);
+
+	/**
+	 * A reusable builder for each thread that renders templates.
+	 */
+	private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(128);
+		}
 	};
 
+	/**
+	 * Builders that grow beyond this capacity are not kept for reuse.
+	 */
+	private static final int MAX_BUILDER_CAPACITY = 4096;
+
+	/**
+	 * Resolved metadata for each call site that has logged, keyed by its stack frame or, for
+	 * calls made through {@link Injected}, its site string.
+	 */
+	private static final ConcurrentHashMap<Object, CallSite> sCallSites =
+			new ConcurrentHashMap<Object, CallSite>();
+
+	/**
+	 * The maximum number of call sites kept by the call site cache.
+	 */
+	private static volatile int sCallSiteCacheSize = DEFAULT_CALL_SITE_CACHE_SIZE;
+
+	private static final AtomicLong sCallSiteHitCount = new AtomicLong();
+
+	private static final AtomicLong sCallSiteMissCount = new AtomicLong();
+
+	/**
+	 * The writer of the asynchronous logging buffer, or null when logging synchronously.
+	 */
+	private static volatile AsyncWriter sAsyncWriter;
+
+	private static volatile int sOverflowPolicy = OVERFLOW_DROP;
+
+	private static volatile int sSampleRate = DEFAULT_SAMPLE_RATE;
+
+	private static final AtomicLong sDroppedRecordCount = new AtomicLong();
+
+	private static final AtomicLong sSampledOutRecordCount = new AtomicLong();
+
+	private static final LogSink[] NO_SINKS = new LogSink[0];
+
+	/**
+	 * The sinks that records are written to besides the log. Replaced rather than modified.
+	 */
+	private static volatile LogSink[] sSinks = NO_SINKS;
+
+	/**
+	 * The rate limits and sample probabilities in effect, or null if no call site is limited.
+	 * Replaced rather than modified.
+	 */
+	private static volatile RateLimits sRateLimits;
+
+	/**
+	 * The rate limiters of each call site that has logged under rate limits, by priority. Kept
+	 * apart from the call site cache, so that clearing that cache neither refills token buckets
+	 * nor loses suppressed counts.
+	 */
+	private static final ConcurrentHashMap<StackTraceElement, RateLimiter[]> sRateLimiters =
+			new ConcurrentHashMap<StackTraceElement, RateLimiter[]>();
+
+	private static volatile long sSuppressionSummaryIntervalNanos =
+			DEFAULT_SUPPRESSION_SUMMARY_INTERVAL * 1000000L;
+
+	private static final AtomicLong sNextSuppressionSummaryNanos = new AtomicLong();
+
+	private static final AtomicLong sSuppressedRecordCount = new AtomicLong();
+
+	/**
+	 * Whether timed sections are timed and counters are counted. Trace sections are emitted
+	 * either way.
+	 */
+	private static volatile boolean sMetricsEnabled;
+
+	private static final ConcurrentHashMap<String, Section> sSections =
+			new ConcurrentHashMap<String, Section>();
+
+	private static final ConcurrentHashMap<String, Counter> sCounters =
+			new ConcurrentHashMap<String, Counter>();
+
+	/**
+	 * The timer that dumps metrics periodically, or null if they are only dumped by
+	 * {@link #dumpMetrics()}. Guarded by the LogEx class.
+	 */
+	private static Timer sMetricsDumpTimer;
+
+	private static long sMetricsDumpIntervalMillis;
+
 	/*
 	 * Static methods
 	 */
@@ -106,8 +341,9 @@ public final class LogEx {
 	 * Sets a global Logging level that can be used to determine whether to Log messages.
 	 * @param level The logging level.
 	 */
-	public static void setLogLevel(int level) {
-		sLogLevel = level;
+	public static synchronized void setLogLevel(int level) {
+		final LevelTable levels = sLevels;
+		sLevels = new LevelTable(level, levels.tags, levels.packages, levels.systemTags);
 	}
 
 	/**
@@ -115,19 +351,22 @@ public final class LogEx {
 	 * @return The logging level.
 	 */
 	public static int getLogLevel() {
-		return sLogLevel;
+		return sLevels.globalLevel;
 	}
 
 	/**
 	 * <p>Checks to see whether or not a log is loggable at the specified level. The default level is set to INFO. This means
 	 * that any level above and including INFO will be logged. Before you make any calls to a logging method you should check
 	 * to see if your tag should be logged.</p>
-	 * <p>Not to be confused with {@link #isLoggable(String, int)}, which mirrors {@link android.util.Log#isLoggable(String, int)}.</p>
+	 * <p>When a tag, package or system property lowers the level for some call sites, this
+	 * answers whether the level is loggable anywhere, and each record is then checked against
+	 * the level of its own call site.</p>
+	 * <p>Not to be confused with {@link #isLoggable(String, int)}, which checks a single tag.</p>
 	 * @param level The level to check.
 	 * @return Whether or not that this is allowed to be logged.
 	 */
 	public static boolean isLoggable(int level) {
-		return level >= sLogLevel;
+		return level >= sLevels.minLevel;
 	}
 
 	/**
@@ -143,13 +382,179 @@ public final class LogEx {
 	 *      'log.tag.&lt;YOUR_LOG_TAG>=&lt;LEVEL>'
 	 *  and place that in /data/local.prop.
 	 *
+	 *  A level set with {@link #setTagLevel(String, int)} takes precedence over the system
+	 *  property, which takes precedence over the global level. A system property of INFO cannot
+	 *  be told apart from no property, so it leaves the global level in effect. System
+	 *  properties are read once for each tag and cached until {@link #refreshLevels()}.
+	 *
+	 *  Calls below the lowest level in effect are rejected before their stack is captured, so
+	 *  the property of a tag can only lower its level below that once the tag is known. Calls
+	 *  made through {@link Injected} know their site, and read it on their first call at any
+	 *  level. Other call sites are known once they have logged at a level in effect, and pick
+	 *  up a property set after that at the next {@link #refreshLevels()}.
+	 *
 	 * @param tag The tag to check.
 	 * @param level The level to check.
 	 * @return Whether or not that this is allowed to be logged.
-	 * @throws IllegalArgumentException is thrown if the tag.length() > 23.
 	 */
 	public static boolean isLoggable(String tag, int level) {
-		return Log.isLoggable(tag, level);
+		return level >= getLevel(tag, null);
+	}
+
+	/**
+	 * Sets the level of call sites logging with the given tag, overriding the global level,
+	 * package levels and the tag's system property. Tags are matched against the formatted tag
+	 * of each call site.
+	 *
+	 * <p>A level below the global level makes filtered calls at that level from every call site
+	 * capture their stacks, so that the tag can be found. Calls made through {@link Injected}
+	 * do not need to.</p>
+	 * @param tag The formatted tag.
+	 * @param level The level, from {@link #VERBOSE} to {@link #SUPPRESS}.
+	 */
+	public static synchronized void setTagLevel(String tag, int level) {
+		checkLevel(level);
+		final LevelTable levels = sLevels;
+		HashMap<String, Integer> tags = new HashMap<String, Integer>(levels.tags);
+		tags.put(tag, level);
+		sLevels = new LevelTable(levels.globalLevel, tags, levels.packages, levels.systemTags);
+	}
+
+	public static synchronized void removeTagLevel(String tag) {
+		final LevelTable levels = sLevels;
+		HashMap<String, Integer> tags = new HashMap<String, Integer>(levels.tags);
+		tags.remove(tag);
+		sLevels = new LevelTable(levels.globalLevel, tags, levels.packages, levels.systemTags);
+	}
+
+	/**
+	 * Sets the level of call sites in the given package and its subpackages, overriding the
+	 * global level. The level of the closest enclosing package applies, and tag levels and
+	 * system properties take precedence.
+	 * @param packageName The package name, such as "com.slaterama.roundedbutton.widget".
+	 * @param level The level, from {@link #VERBOSE} to {@link #SUPPRESS}.
+	 * @see #setTagLevel(String, int)
+	 */
+	public static synchronized void setPackageLevel(String packageName, int level) {
+		checkLevel(level);
+		final LevelTable levels = sLevels;
+		HashMap<String, Integer> packages = new HashMap<String, Integer>(levels.packages);
+		packages.put(packageName, level);
+		sLevels = new LevelTable(levels.globalLevel, levels.tags, packages, levels.systemTags);
+	}
+
+	public static synchronized void removePackageLevel(String packageName) {
+		final LevelTable levels = sLevels;
+		HashMap<String, Integer> packages = new HashMap<String, Integer>(levels.packages);
+		packages.remove(packageName);
+		sLevels = new LevelTable(levels.globalLevel, levels.tags, packages, levels.systemTags);
+	}
+
+	/**
+	 * Removes all tag and package levels, leaving the global level and system properties.
+	 */
+	public static synchronized void clearLevelOverrides() {
+		final LevelTable levels = sLevels;
+		sLevels = new LevelTable(levels.globalLevel, new HashMap<String, Integer>(),
+				new HashMap<String, Integer>(), levels.systemTags);
+	}
+
+	/**
+	 * Reads the log.tag system properties of the tags seen so far again, so that properties set
+	 * with 'setprop' take effect.
+	 * @see #isLoggable(String, int)
+	 */
+	public static synchronized void refreshLevels() {
+		final LevelTable levels = sLevels;
+		HashMap<String, Integer> systemTags = new HashMap<String, Integer>();
+		for (String tag : levels.systemTags.keySet()) {
+			systemTags.put(tag, readSystemLevel(tag));
+		}
+		sLevels = new LevelTable(levels.globalLevel, levels.tags, levels.packages, systemTags);
+	}
+
+	/**
+	 * Refreshes the system property levels periodically, on a background timer.
+	 * @param intervalMillis The interval, in milliseconds, or 0 to only refresh them when
+	 *                       {@link #refreshLevels()} is called, which is the default.
+	 */
+	public static synchronized void setLevelRefreshInterval(long intervalMillis) {
+		if (intervalMillis < 0) {
+			throw new IllegalArgumentException("intervalMillis must not be negative");
+		}
+		if (sLevelRefreshTimer != null) {
+			sLevelRefreshTimer.cancel();
+			sLevelRefreshTimer = null;
+		}
+		sLevelRefreshIntervalMillis = intervalMillis;
+		if (intervalMillis > 0) {
+			sLevelRefreshTimer = new Timer("LogEx levels", true);
+			sLevelRefreshTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					refreshLevels();
+				}
+			}, intervalMillis, intervalMillis);
+		}
+	}
+
+	public static synchronized long getLevelRefreshInterval() {
+		return sLevelRefreshIntervalMillis;
+	}
+
+	private static void checkLevel(int level) {
+		if (level < VERBOSE || level > SUPPRESS) {
+			throw new IllegalArgumentException("Unknown level " + level);
+		}
+	}
+
+	/**
+	 * Returns the level of a call site with the given formatted tag and package, reading and
+	 * caching the tag's system property if it has not been seen before.
+	 * @param packageName The package of the call site, or null to only match the tag.
+	 */
+	private static int getLevel(String tag, String packageName) {
+		final LevelTable levels = sLevels;
+		Integer systemLevel = levels.systemTags.get(tag);
+		if (systemLevel == null) {
+			systemLevel = addSystemLevel(tag);
+		}
+		return levels.getLevel(tag, systemLevel, packageName);
+	}
+
+	private static synchronized int addSystemLevel(String tag) {
+		final LevelTable levels = sLevels;
+		Integer systemLevel = levels.systemTags.get(tag);
+		if (systemLevel != null) {
+			return systemLevel;
+		}
+		final int level = readSystemLevel(tag);
+		if (levels.systemTags.size() < MAX_SYSTEM_LEVEL_TAGS) {
+			HashMap<String, Integer> systemTags =
+					new HashMap<String, Integer>(levels.systemTags);
+			systemTags.put(tag, level);
+			sLevels = new LevelTable(levels.globalLevel, levels.tags, levels.packages, systemTags);
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the level set by the log.tag system property of the given tag, or
+	 * {@link #NO_LEVEL} if none is set.
+	 */
+	private static int readSystemLevel(String tag) {
+		try {
+			for (int level = VERBOSE; level <= ASSERT; level++) {
+				if (Log.isLoggable(tag, level)) {
+					// Tags without a property are loggable from INFO, so INFO means no property.
+					return (level == INFO ? NO_LEVEL : level);
+				}
+			}
+			return SUPPRESS;
+		} catch (IllegalArgumentException e) {
+			// Tags longer than 23 characters cannot have a property before Android N.
+			return NO_LEVEL;
+		}
 	}
 
 	/**
@@ -160,8 +565,7 @@ public final class LogEx {
 	 *             will be replaced with the appropriate value when the message is logged.
 	 */
 	public static void setTagFormat(String format, Object... args) {
-		sTagFormat = format;
-		sTagArgs = args;
+		sTagTemplate = Template.compile(format, args);
 	}
 
 	/**
@@ -172,350 +576,2644 @@ public final class LogEx {
 	 *             will be replaced with the appropriate value when the message is logged.
 	 */
 	public static void setMessageFormat(String format, Object... args) {
-		sMessageFormat = format;
-		sMessageArgs = args;
+		sMessageTemplate = Template.compile(format, args);
 	}
 
 	/**
-	 * Returns a localized formatted string, using the supplied format and arguments, using the user's default locale.
-	 * @param format the format string
-	 * @param args the list of arguments passed to the formatter. If there are more arguments than required by <code>format</code>,
-	 *             additional arguments are ignored. Arguments of type {@link LogEx.Placeholder}
-	 *             are replaced with the appropriate value from <code>element</code>.
-	 * @param element A representation of a single stack frame.
-	 * @param str The string (i.e. tag or message) to be logged.
-	 * @return The localized formatted string.
+	 * Sets the maximum number of call sites whose class, simple class and package names are
+	 * cached. When the cache is full it is cleared, so that the call sites that are still
+	 * logging repopulate it.
+	 * @param size The maximum number of cached call sites.
 	 */
-	private static String format(String format, Object[] args, StackTraceElement element, String str) {
-		Object[] resolvedArgs = new Object[args.length];
-		for (int i = 0; i < args.length; i++) {
-			Object arg = args[i];
-			if (arg instanceof Placeholder) {
-				Placeholder placeholder = (Placeholder) arg;
-				try {
-					switch (placeholder) {
-						case CLASS_NAME: {
-							Class cls = Class.forName(element.getClassName());
-							String name = cls.getName();
-							while (TextUtils.isEmpty(name)) {
-								cls = cls.getEnclosingClass();
-								if (cls == null)
-									name = "[Unknown]";
-								else
-									name = cls.getName();
-							}
-							resolvedArgs[i] = name;
-							break;
-						}
-						case FILE_NAME:
-							resolvedArgs[i] = element.getFileName();
-							break;
-						case LINE_NUMBER:
-							resolvedArgs[i] = element.getLineNumber();
-							break;
-						case METHOD_NAME:
-							resolvedArgs[i] = element.getMethodName();
-							break;
-						case HASH_CODE:
-							resolvedArgs[i] = element.hashCode();
-							break;
-						case MESSAGE:
-							resolvedArgs[i] = str;
-							break;
-						case SIMPLE_CLASS_NAME: {
-							Class cls = Class.forName(element.getClassName());
-							String name = cls.getSimpleName();
-							while (TextUtils.isEmpty(name)) {
-								cls = cls.getEnclosingClass();
-								if (cls == null)
-									name = "[Unknown]";
-								else
-									name = cls.getSimpleName();
-							}
-							resolvedArgs[i] = name;
-							break;
-						}
-						case PACKAGE:
-							resolvedArgs[i] = Class.forName(element.getClassName()).getPackage().getName();
-							break;
-						default:
-							resolvedArgs[i] = "[Unknown]";
-					}
-				} catch (ClassNotFoundException e) {
-					resolvedArgs[i] = "[Unknown]";
-				}
-			} else {
-				resolvedArgs[i] = arg;
-			}
+	public static void setCallSiteCacheSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("size must be at least 1");
+		}
+		sCallSiteCacheSize = size;
+		if (sCallSites.size() > size) {
+			sCallSites.clear();
 		}
-		return String.format(format, resolvedArgs);
 	}
 
 	/**
-	 * Send a {@link #VERBOSE} log message.
+	 * Returns the maximum number of call sites kept by the call site cache.
 	 */
-	public static int v() {
-		return println(VERBOSE, "", "", new LogThrowable());
+	public static int getCallSiteCacheSize() {
+		return sCallSiteCacheSize;
 	}
 
 	/**
-	 * Send a {@link #VERBOSE} log message.
-	 * @param msg The message you would like logged.
+	 * Returns the number of logged records whose call site metadata was found in the cache.
 	 */
-	public static int v(String msg) {
-		return println(VERBOSE, "", msg, new LogThrowable());
+	public static long getCallSiteCacheHitCount() {
+		return sCallSiteHitCount.get();
 	}
 
 	/**
-	 * Send a {@link #VERBOSE} log message.
-	 * @param msg The message you would like logged.
-	 * @param tr An exception to log
+	 * Returns the number of logged records whose call site metadata had to be resolved.
 	 */
-	public static int v(String msg, Throwable tr) {
-		return println(VERBOSE, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static long getCallSiteCacheMissCount() {
+		return sCallSiteMissCount.get();
 	}
 
 	/**
-	 * Send a {@link #VERBOSE} log message.
-	 * @param tag Used to identify the source of a log message.  It usually identifies
-	 *        the class or activity where the log call occurs.
-	 * @param msg The message you would like logged.
+	 * Clears the call site cache and resets its hit and miss counts.
 	 */
-	public static int v(String tag, String msg) {
-		return println(VERBOSE, tag, msg, new LogThrowable());
+	public static void clearCallSiteCache() {
+		sCallSites.clear();
+		sCallSiteHitCount.set(0L);
+		sCallSiteMissCount.set(0L);
 	}
 
 	/**
-	 * Send a {@link #VERBOSE} log message and log the exception.
-	 * @param tag Used to identify the source of a log message.  It usually identifies
-	 *        the class or activity where the log call occurs.
-	 * @param msg The message you would like logged.
-	 * @param tr An exception to log
+	 * Starts logging asynchronously with a buffer of {@link #DEFAULT_ASYNC_CAPACITY} records.
+	 * @see #startAsync(int)
 	 */
-	public static int v(String tag, String msg, Throwable tr) {
-		return println(VERBOSE, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static void startAsync() {
+		startAsync(DEFAULT_ASYNC_CAPACITY);
 	}
 
 	/**
-	 * Send a {@link #DEBUG} log message.
+	 * Starts logging asynchronously. Logging calls then only capture the level, tag, message
+	 * and stack of each record into a preallocated ring buffer, without taking a lock, and a
+	 * background thread resolves the call site, formats the tag and message and writes them to
+	 * the log. While logging asynchronously the logging methods return 0, as nothing has been
+	 * written when they return. Does nothing if already logging asynchronously.
+	 * @param capacity The number of records the buffer holds, rounded up to a power of two.
+	 * @see #setOverflowPolicy(int)
 	 */
-	public static int d() {
-		return println(DEBUG, "", "", new LogThrowable());
+	public static synchronized void startAsync(int capacity) {
+		if (capacity < 1 || capacity > MAX_ASYNC_CAPACITY) {
+			throw new IllegalArgumentException("capacity must be between 1 and " +
+					MAX_ASYNC_CAPACITY);
+		}
+		if (sAsyncWriter == null) {
+			AsyncWriter writer = new AsyncWriter(capacity);
+			writer.start();
+			sAsyncWriter = writer;
+		}
 	}
 
 	/**
-	 * Send a {@link #DEBUG} log message.
-	 * @param msg The message you would like logged.
+	 * Writes any buffered records, stops the background thread and returns to logging
+	 * synchronously. Does nothing if not logging asynchronously.
 	 */
-	public static int d(String msg) {
-		return println(DEBUG, "", msg, new LogThrowable());
+	public static void stopAsync() {
+		final AsyncWriter writer;
+		synchronized (LogEx.class) {
+			writer = sAsyncWriter;
+			sAsyncWriter = null;
+		}
+		// Joined without the lock, which the background thread may need to resolve a level.
+		if (writer != null) {
+			writer.stop();
+		}
 	}
 
 	/**
-	 * Send a {@link #DEBUG} log message.
-	 * @param msg The message you would like logged.
-	 * @param tr An exception to log
+	 * Returns whether records are currently logged asynchronously.
 	 */
-	public static int d(String msg, Throwable tr) {
-		return println(DEBUG, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static boolean isAsync() {
+		return sAsyncWriter != null;
 	}
 
 	/**
-	 * Send a {@link #DEBUG} log message.
-	 * @param tag Used to identify the source of a log message.  It usually identifies
-	 *        the class or activity where the log call occurs.
-	 * @param msg The message you would like logged.
+	 * Blocks until every record logged before this call has been written. Does nothing if not
+	 * logging asynchronously.
 	 */
-	public static int d(String tag, String msg) {
-		return println(DEBUG, tag, msg, new LogThrowable());
+	public static void flush() {
+		AsyncWriter writer = sAsyncWriter;
+		if (writer != null) {
+			writer.flush();
+		}
 	}
 
 	/**
-	 * Send a {@link #DEBUG} log message and log the exception.
-	 * @param tag Used to identify the source of a log message.  It usually identifies
-	 *        the class or activity where the log call occurs.
-	 * @param msg The message you would like logged.
-	 * @param tr An exception to log
+	 * Sets what happens to records logged while the asynchronous logging buffer is full.
+	 * @param policy One of {@link #OVERFLOW_DROP}, {@link #OVERFLOW_BLOCK} or
+	 *               {@link #OVERFLOW_SAMPLE}. The default is {@link #OVERFLOW_DROP}.
 	 */
-	public static int d(String tag, String msg, Throwable tr) {
-		return println(DEBUG, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static void setOverflowPolicy(int policy) {
+		switch (policy) {
+			case OVERFLOW_DROP:
+			case OVERFLOW_BLOCK:
+			case OVERFLOW_SAMPLE:
+				sOverflowPolicy = policy;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown overflow policy " + policy);
+		}
+	}
+
+	public static int getOverflowPolicy() {
+		return sOverflowPolicy;
 	}
 
 	/**
-	 * Send an {@link #INFO} log message.
+	 * Sets how many records logged while the buffer is at least half full are counted for
+	 * each one that is kept under {@link #OVERFLOW_SAMPLE}.
+	 * @param rate The sample rate. The default is {@link #DEFAULT_SAMPLE_RATE}.
 	 */
-	public static int i() {
-		return println(INFO, "", "", new LogThrowable());
+	public static void setSampleRate(int rate) {
+		if (rate < 1) {
+			throw new IllegalArgumentException("rate must be at least 1");
+		}
+		sSampleRate = rate;
+	}
+
+	public static int getSampleRate() {
+		return sSampleRate;
 	}
 
 	/**
-	 * Send an {@link #INFO} log message.
-	 * @param msg The message you would like logged.
+	 * Returns the number of records dropped because the asynchronous logging buffer was full.
 	 */
-	public static int i(String msg) {
-		return println(INFO, "", msg, new LogThrowable());
+	public static long getDroppedRecordCount() {
+		return sDroppedRecordCount.get();
 	}
 
 	/**
-	 * Send an {@link #INFO} log message.
-	 * @param msg The message you would like logged.
-	 * @param tr An exception to log
+	 * Returns the number of records left out by {@link #OVERFLOW_SAMPLE}.
 	 */
-	public static int i(String msg, Throwable tr) {
-		return println(INFO, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static long getSampledOutRecordCount() {
+		return sSampledOutRecordCount.get();
 	}
 
 	/**
-	 * Send an {@link #INFO} log message.
-	 * @param tag Used to identify the source of a log message.  It usually identifies
-	 *        the class or activity where the log call occurs.
-	 * @param msg The message you would like logged.
+	 * Resets the dropped and sampled out record counts.
 	 */
-	public static int i(String tag, String msg) {
-		return println(INFO, tag, msg, new LogThrowable());
+	public static void resetDroppedRecordCounts() {
+		sDroppedRecordCount.set(0L);
+		sSampledOutRecordCount.set(0L);
 	}
 
 	/**
-	 * Send an {@link #INFO} log message and log the exception.
-	 * @param tag Used to identify the source of a log message.  It usually identifies
-	 *        the class or activity where the log call occurs.
-	 * @param msg The message you would like logged.
-	 * @param tr An exception to log
+	 * Adds a sink that every record written to the log is also written to. Sinks are written
+	 * from the logging thread, or the background thread when logging asynchronously.
 	 */
-	public static int i(String tag, String msg, Throwable tr) {
-		return println(INFO, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static synchronized void addSink(LogSink sink) {
+		if (sink == null) {
+			throw new IllegalArgumentException("sink must not be null");
+		}
+		LogSink[] sinks = new LogSink[sSinks.length + 1];
+		System.arraycopy(sSinks, 0, sinks, 0, sSinks.length);
+		sinks[sSinks.length] = sink;
+		sSinks = sinks;
 	}
 
 	/**
-	 * Send a {@link #WARN} log message.
+	 * Removes a sink added with {@link #addSink(LogSink)}.
 	 */
-	public static int w() {
-		return println(WARN, "", "", new LogThrowable());
+	public static synchronized void removeSink(LogSink sink) {
+		for (int i = 0; i < sSinks.length; i++) {
+			if (sSinks[i] == sink) {
+				LogSink[] sinks = new LogSink[sSinks.length - 1];
+				System.arraycopy(sSinks, 0, sinks, 0, i);
+				System.arraycopy(sSinks, i + 1, sinks, i, sinks.length - i);
+				sSinks = sinks;
+				return;
+			}
+		}
 	}
 
 	/**
-	 * Send a {@link #WARN} log message.
+	 * Limits each call site to the given rate of records at the given level, with bursts of up
+	 * to the given number of records. Records over the limit are suppressed and counted, and
+	 * each call site that suppressed records is summarized periodically. A rate set for a tag
+	 * with {@link #setTagRateLimit(String, float, int)} takes precedence.
+	 *
+	 * <p>Call sites are still resolved before they are limited, so a suppressed record costs
+	 * about as much to capture, but is neither formatted nor written.</p>
+	 * @param priority The level to limit, such as {@link #DEBUG}.
+	 * @param recordsPerSecond The sustained rate, or {@link #UNLIMITED}.
+	 * @param burst The number of records a call site may log at once after being idle.
+	 */
+	public static synchronized void setRateLimit(int priority, float recordsPerSecond,
+	                                             int burst) {
+		checkPriority(priority);
+		RateLimits limits = RateLimits.copyOf(sRateLimits);
+		limits.levels[priority] = limits.levels[priority].withRate(recordsPerSecond, burst);
+		sRateLimits = limits;
+	}
+
+	/**
+	 * Keeps each record at the given level with the given probability, before any rate limit
+	 * is applied. A probability set for a tag with
+	 * {@link #setTagSampleProbability(String, float)} takes precedence.
+	 * @param priority The level to sample, such as {@link #DEBUG}.
+	 * @param probability The probability, from 0 to 1, of keeping a record.
+	 */
+	public static synchronized void setSampleProbability(int priority, float probability) {
+		checkPriority(priority);
+		RateLimits limits = RateLimits.copyOf(sRateLimits);
+		limits.levels[priority] = limits.levels[priority].withProbability(probability);
+		sRateLimits = limits;
+	}
+
+	/**
+	 * Limits each call site logging with the given tag, at any level. Tags are matched against
+	 * the formatted tag of the first record a call site logs at each level.
+	 * @see #setRateLimit(int, float, int)
+	 */
+	public static synchronized void setTagRateLimit(String tag, float recordsPerSecond,
+	                                                int burst) {
+		RateLimits limits = RateLimits.copyOf(sRateLimits);
+		limits.tags.put(tag, limits.getTagLimit(tag).withRate(recordsPerSecond, burst));
+		sRateLimits = limits;
+	}
+
+	/**
+	 * Samples records from each call site logging with the given tag, at any level.
+	 * @see #setSampleProbability(int, float)
+	 * @see #setTagRateLimit(String, float, int)
+	 */
+	public static synchronized void setTagSampleProbability(String tag, float probability) {
+		RateLimits limits = RateLimits.copyOf(sRateLimits);
+		limits.tags.put(tag, limits.getTagLimit(tag).withProbability(probability));
+		sRateLimits = limits;
+	}
+
+	/**
+	 * Removes all rate limits and sample probabilities.
+	 */
+	public static synchronized void clearRateLimits() {
+		sRateLimits = null;
+		writeSuppressionSummaries(true);
+		sRateLimiters.clear();
+	}
+
+	/**
+	 * Sets how often each call site that suppressed records is summarized with a "Suppressed
+	 * N records" message. Summaries are due when LogEx next handles a record, suppressed or
+	 * not.
+	 * @param intervalMillis The interval, in milliseconds. The default is
+	 *                       {@link #DEFAULT_SUPPRESSION_SUMMARY_INTERVAL}.
+	 */
+	public static void setSuppressionSummaryInterval(long intervalMillis) {
+		if (intervalMillis < 0) {
+			throw new IllegalArgumentException("intervalMillis must not be negative");
+		}
+		sSuppressionSummaryIntervalNanos = intervalMillis * 1000000L;
+	}
+
+	public static long getSuppressionSummaryInterval() {
+		return sSuppressionSummaryIntervalNanos / 1000000L;
+	}
+
+	/**
+	 * Returns the number of records suppressed by rate limits and sampling.
+	 */
+	public static long getSuppressedRecordCount() {
+		return sSuppressedRecordCount.get();
+	}
+
+	private static void checkPriority(int priority) {
+		if (priority < VERBOSE || priority > ASSERT) {
+			throw new IllegalArgumentException("Unknown priority " + priority);
+		}
+	}
+
+	/**
+	 * Writes a summary for each call site that suppressed records, if one is due.
+	 * @param force Whether to write the summaries even if they are not due.
+	 */
+	private static void writeSuppressionSummaries(boolean force) {
+		final long now = System.nanoTime();
+		final long next = sNextSuppressionSummaryNanos.get();
+		if (!force && (now - next < 0 ||
+				!sNextSuppressionSummaryNanos.compareAndSet(next,
+						now + sSuppressionSummaryIntervalNanos))) {
+			return;
+		}
+		for (Map.Entry<StackTraceElement, RateLimiter[]> entry : sRateLimiters.entrySet()) {
+			final StackTraceElement element = entry.getKey();
+			for (RateLimiter limiter : entry.getValue()) {
+				final long suppressed = (limiter == null ? 0L : limiter.takeSuppressedCount());
+				if (suppressed > 0L) {
+					final String msg = new StringBuilder("Suppressed ").append(suppressed)
+							.append(suppressed == 1L ? " record from " : " records from ")
+							.append(element).toString();
+					Log.println(limiter.priority, limiter.tag, msg);
+					for (LogSink sink : sSinks) {
+						sink.write(System.currentTimeMillis(), limiter.priority, limiter.tag, msg,
+								element);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a record logged at the given priority from the given call site may be
+	 * written, under the given limits.
+	 */
+	private static boolean tryAcquire(CallSite site, RateLimits limits, int priority,
+	                                  String tag) {
+		if (priority < VERBOSE || priority > ASSERT) {
+			return true;
+		}
+		RateLimiter[] limiters = sRateLimiters.get(site.element);
+		if (limiters == null) {
+			if (sRateLimiters.size() >= MAX_RATE_LIMITED_SITES) {
+				// Summarize what the limiters suppressed before they are dropped.
+				writeSuppressionSummaries(true);
+				sRateLimiters.clear();
+			}
+			limiters = new RateLimiter[ASSERT + 1];
+			final RateLimiter[] existing = sRateLimiters.putIfAbsent(site.element, limiters);
+			if (existing != null) {
+				limiters = existing;
+			}
+		}
+		RateLimiter limiter = limiters[priority];
+		if (limiter == null || limiter.limits != limits) {
+			final String formattedTag = sTagTemplate.render(site, tag);
+			final RateLimiter replaced = limiter;
+			limiter = new RateLimiter(limits, limits.getLimit(priority, formattedTag), priority,
+					formattedTag);
+			if (replaced != null) {
+				// Keep what the replaced limiter suppressed, so that it is still summarized.
+				limiter.addSuppressedCount(replaced.takeSuppressedCount());
+			}
+			limiters[priority] = limiter;
+		}
+		return limiter.tryAcquire();
+	}
+
+	/**
+	 * Returns whether a record from an {@link Injected} call site passes the level and rate
+	 * limit of its site, reading the system property of the site's tag if it has not been
+	 * read yet. Injected calls check this before they format their message, so that
+	 * suppressed records cost no formatting, and {@link #write} does not limit them again.
+	 */
+	private static boolean isAllowed(int priority, String tag, String siteKey) {
+		final RateLimits limits = sRateLimits;
+		if (isLoggable(priority) && limits == null) {
+			return true;
+		}
+		// The site is known without capturing the stack, so it is checked even below the lowest
+		// level in effect, which lets the system property of a tag not seen before lower it.
+		final CallSite site = getCallSite(siteKey);
+		if (!site.isLoggable(priority, tag)) {
+			return false;
+		}
+		if (limits != null && !tryAcquire(site, limits, priority, tag)) {
+			sSuppressedRecordCount.incrementAndGet();
+			writeSuppressionSummaries(false);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Starts or stops timing sections and counting counters. Metrics are disabled by default,
+	 * so that instrumented code only pays for a field read and any trace section.
+	 */
+	public static void setMetricsEnabled(boolean enabled) {
+		sMetricsEnabled = enabled;
+	}
+
+	public static boolean isMetricsEnabled() {
+		return sMetricsEnabled;
+	}
+
+	/**
+	 * Returns the timed section with the given name, creating it if it does not exist. Keep
+	 * sections in static fields, so that timing them allocates nothing.
+	 * @param name The name of the section, which is also its trace section name.
+	 */
+	public static Section newSection(String name) {
+		Section section = sSections.get(name);
+		if (section == null) {
+			section = new Section(name);
+			final Section existing = sSections.putIfAbsent(name, section);
+			if (existing != null) {
+				section = existing;
+			}
+		}
+		return section;
+	}
+
+	/**
+	 * Returns the counter with the given name, creating it if it does not exist.
+	 * @see #newSection(String)
+	 */
+	public static Counter newCounter(String name) {
+		Counter counter = sCounters.get(name);
+		if (counter == null) {
+			counter = new Counter(name);
+			final Counter existing = sCounters.putIfAbsent(name, counter);
+			if (existing != null) {
+				counter = existing;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Begins a timed section, which must be ended on the same thread, usually in a finally
+	 * block:
+	 *
+	 * <pre>
+	 * final long start = LogEx.beginSection(SECTION_DRAW);
+	 * try {
+	 *     ...
+	 * } finally {
+	 *     LogEx.endSection(SECTION_DRAW, start);
+	 * }
+	 * </pre>
+	 * @return The start time to pass to {@link #endSection(Section, long)}, or 0 if metrics are
+	 * disabled.
+	 */
+	public static long beginSection(Section section) {
+		TraceCompat.beginSection(section.mTraceName);
+		return (sMetricsEnabled ? System.nanoTime() : 0L);
+	}
+
+	/**
+	 * Ends a timed section and adds its time to the section's histogram.
+	 * @param startNanos The start time returned by {@link #beginSection(Section)}.
+	 */
+	public static void endSection(Section section, long startNanos) {
+		if (startNanos != 0L) {
+			section.record(System.nanoTime() - startNanos);
+		}
+		TraceCompat.endSection();
+	}
+
+	public static void increment(Counter counter) {
+		if (sMetricsEnabled) {
+			counter.mCount.incrementAndGet();
+		}
+	}
+
+	public static void add(Counter counter, long delta) {
+		if (sMetricsEnabled) {
+			counter.mCount.addAndGet(delta);
+		}
+	}
+
+	/**
+	 * Clears the times of every section and the count of every counter.
+	 */
+	public static void resetMetrics() {
+		for (Section section : sSections.values()) {
+			section.reset();
+		}
+		for (Counter counter : sCounters.values()) {
+			counter.mCount.set(0L);
+		}
+	}
+
+	/**
+	 * Writes a line for each section that has run and each counter that has counted to the log
+	 * at {@link #INFO}, and to any sinks, regardless of the log level.
+	 */
+	public static void dumpMetrics() {
+		final StringBuilder out = new StringBuilder();
+		try {
+			dumpMetrics(out);
+		} catch (IOException e) {
+			// StringBuilder does not throw.
+		}
+		int start = 0;
+		while (start < out.length()) {
+			final int end = out.indexOf("\n", start);
+			final String msg = out.substring(start, end);
+			Log.println(INFO, METRICS_TAG, msg);
+			for (LogSink sink : sSinks) {
+				sink.write(System.currentTimeMillis(), INFO, METRICS_TAG, msg, null);
+			}
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Appends a line for each section that has run and each counter that has counted, in order
+	 * of name:
+	 *
+	 * <pre>
+	 * FloatingActionButton#onMeasure: 120 calls, total 3.42 ms, mean 28.5 us, p50 32.7 us, ...
+	 * </pre>
+	 *
+	 * <p>Percentiles are read from the histograms, so they are the upper bound of the bucket the
+	 * percentile falls in.</p>
+	 */
+	public static void dumpMetrics(Appendable out) throws IOException {
+		for (Section section : new TreeMap<String, Section>(sSections).values()) {
+			final long count = section.getCount();
+			if (count == 0L) {
+				continue;
+			}
+			final long total = section.getTotalNanos();
+			out.append(String.format(Locale.US,
+					"%s: %d calls, total %.2f ms, mean %.1f us, p50 %.1f us, p90 %.1f us, " +
+							"p99 %.1f us, max %.1f us",
+					section.getName(), count, total / 1.0e6, total / 1.0e3 / count,
+					section.getPercentileNanos(0.5f) / 1.0e3,
+					section.getPercentileNanos(0.9f) / 1.0e3,
+					section.getPercentileNanos(0.99f) / 1.0e3,
+					section.getMaxNanos() / 1.0e3)).append('\n');
+		}
+		for (Counter counter : new TreeMap<String, Counter>(sCounters).values()) {
+			final long count = counter.getCount();
+			if (count != 0L) {
+				out.append(counter.getName()).append(": ").append(Long.toString(count))
+						.append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Dumps metrics periodically, on a background timer.
+	 * @param intervalMillis The interval, in milliseconds, or 0 to only dump them when
+	 *                       {@link #dumpMetrics()} is called, which is the default.
+	 */
+	public static synchronized void setMetricsDumpInterval(long intervalMillis) {
+		if (intervalMillis < 0) {
+			throw new IllegalArgumentException("intervalMillis must not be negative");
+		}
+		if (sMetricsDumpTimer != null) {
+			sMetricsDumpTimer.cancel();
+			sMetricsDumpTimer = null;
+		}
+		sMetricsDumpIntervalMillis = intervalMillis;
+		if (intervalMillis > 0) {
+			sMetricsDumpTimer = new Timer("LogEx metrics", true);
+			sMetricsDumpTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					dumpMetrics();
+				}
+			}, intervalMillis, intervalMillis);
+		}
+	}
+
+	public static synchronized long getMetricsDumpInterval() {
+		return sMetricsDumpIntervalMillis;
+	}
+
+	/**
+	 * Returns the metadata for the call site represented by the given stack frame or
+	 * {@link Injected} site string, resolving and caching it if it is not already cached.
+	 */
+	private static CallSite getCallSite(Object key) {
+		CallSite site = sCallSites.get(key);
+		if (site != null) {
+			sCallSiteHitCount.incrementAndGet();
+			return site;
+		}
+		sCallSiteMissCount.incrementAndGet();
+		site = new CallSite(key instanceof String ?
+				parseSite((String) key) : (StackTraceElement) key);
+		if (sCallSites.size() >= sCallSiteCacheSize) {
+			sCallSites.clear();
+		}
+		sCallSites.put(key, site);
+		return site;
+	}
+
+	/**
+	 * Returns the stack frame described by an {@link Injected} site string.
+	 */
+	private static StackTraceElement parseSite(String site) {
+		final int methodStart = site.indexOf('/') + 1;
+		final int lineStart = site.indexOf('/', methodStart) + 1;
+		final int fileStart = site.indexOf('/', lineStart) + 1;
+		if (methodStart == 0 || lineStart == 0 || fileStart == 0) {
+			return new StackTraceElement(UNKNOWN, UNKNOWN, null, -1);
+		}
+		int lineNumber;
+		try {
+			lineNumber = Integer.parseInt(site.substring(lineStart, fileStart - 1));
+		} catch (NumberFormatException e) {
+			lineNumber = -1;
+		}
+		return new StackTraceElement(site.substring(0, methodStart - 1),
+				site.substring(methodStart, lineStart - 1),
+				(fileStart == site.length() ? null : site.substring(fileStart)), lineNumber);
+	}
+
+	/**
+	 * Returns a localized formatted string, using the supplied format and arguments, using the user's default locale.
+	 * Used for formats that {@link Template} cannot render itself.
+	 * @param format the format string
+	 * @param args the list of arguments passed to the formatter. If there are more arguments than required by <code>format</code>,
+	 *             additional arguments are ignored. Arguments of type {@link LogEx.Placeholder}
+	 *             are replaced with the appropriate value from <code>site</code>.
+	 * @param site The call site that requested the logging call.
+	 * @param str The string (i.e. tag or message) to be logged.
+	 * @return The localized formatted string.
+	 */
+	private static String format(String format, Object[] args, CallSite site, String str) {
+		Object[] resolvedArgs = new Object[args.length];
+		for (int i = 0; i < args.length; i++) {
+			Object arg = args[i];
+			if (arg instanceof Placeholder) {
+				switch ((Placeholder) arg) {
+					case CLASS_NAME:
+						resolvedArgs[i] = site.className;
+						break;
+					case FILE_NAME:
+						resolvedArgs[i] = site.fileName;
+						break;
+					case LINE_NUMBER:
+						resolvedArgs[i] = site.lineNumber;
+						break;
+					case METHOD_NAME:
+						resolvedArgs[i] = site.methodName;
+						break;
+					case HASH_CODE:
+						resolvedArgs[i] = site.hashCode;
+						break;
+					case MESSAGE:
+						resolvedArgs[i] = str;
+						break;
+					case SIMPLE_CLASS_NAME:
+						resolvedArgs[i] = site.simpleClassName;
+						break;
+					case PACKAGE:
+						resolvedArgs[i] = site.packageName;
+						break;
+					default:
+						resolvedArgs[i] = UNKNOWN;
+				}
+			} else {
+				resolvedArgs[i] = arg;
+			}
+		}
+		return String.format(format, resolvedArgs);
+	}
+
+	/**
+	 * Send a {@link #VERBOSE} log message.
+	 */
+	public static int v() {
+		if (!isLoggable(VERBOSE)) {
+			return 0;
+		}
+		return println(VERBOSE, "", "", new LogThrowable());
+	}
+
+	/**
+	 * Send a {@link #VERBOSE} log message.
 	 * @param msg The message you would like logged.
 	 */
-	public static int w(String msg) {
-		return println(WARN, "", msg, new LogThrowable());
+	public static int v(String msg) {
+		if (!isLoggable(VERBOSE)) {
+			return 0;
+		}
+		return println(VERBOSE, "", msg, new LogThrowable());
 	}
 
 	/**
-	 * Send a {@link #WARN} log message.
+	 * Send a {@link #VERBOSE} log message.
 	 * @param msg The message you would like logged.
 	 * @param tr An exception to log
 	 */
-	public static int w(String msg, Throwable tr) {
-		return println(WARN, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static int v(String msg, Throwable tr) {
+		if (!isLoggable(VERBOSE)) {
+			return 0;
+		}
+		return println(VERBOSE, "", msg + '\n' + Log.getStackTraceString(tr), tr);
 	}
 
 	/**
-	 * Send a {@link #WARN} log message.
+	 * Send a {@link #VERBOSE} log message.
 	 * @param tag Used to identify the source of a log message.  It usually identifies
 	 *        the class or activity where the log call occurs.
 	 * @param msg The message you would like logged.
 	 */
-	public static int w(String tag, String msg) {
-		return println(WARN, tag, msg, new LogThrowable());
+	public static int v(String tag, String msg) {
+		if (!isLoggable(VERBOSE)) {
+			return 0;
+		}
+		return println(VERBOSE, tag, msg, new LogThrowable());
 	}
 
 	/**
-	 * Send a {@link #WARN} log message and log the exception.
+	 * Send a {@link #VERBOSE} log message and log the exception.
 	 * @param tag Used to identify the source of a log message.  It usually identifies
 	 *        the class or activity where the log call occurs.
 	 * @param msg The message you would like logged.
 	 * @param tr An exception to log
 	 */
-	public static int w(String tag, String msg, Throwable tr) {
-		return println(WARN, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static int v(String tag, String msg, Throwable tr) {
+		if (!isLoggable(VERBOSE)) {
+			return 0;
+		}
+		return println(VERBOSE, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
 	}
 
 	/**
-	 * Send an {@link #ERROR} log message.
+	 * Send a {@link #DEBUG} log message.
 	 */
-	public static int e() {
-		return println(ERROR, "", "", new LogThrowable());
+	public static int d() {
+		if (!isLoggable(DEBUG)) {
+			return 0;
+		}
+		return println(DEBUG, "", "", new LogThrowable());
 	}
 
 	/**
-	 * Send an {@link #ERROR} log message.
+	 * Send a {@link #DEBUG} log message.
 	 * @param msg The message you would like logged.
 	 */
-	public static int e(String msg) {
-		return println(ERROR, "", msg, new LogThrowable());
+	public static int d(String msg) {
+		if (!isLoggable(DEBUG)) {
+			return 0;
+		}
+		return println(DEBUG, "", msg, new LogThrowable());
 	}
 
 	/**
-	 * Send an {@link #ERROR} log message.
+	 * Send a {@link #DEBUG} log message.
 	 * @param msg The message you would like logged.
 	 * @param tr An exception to log
 	 */
-	public static int e(String msg, Throwable tr) {
-		return println(ERROR, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	public static int d(String msg, Throwable tr) {
+		if (!isLoggable(DEBUG)) {
+			return 0;
+		}
+		return println(DEBUG, "", msg + '\n' + Log.getStackTraceString(tr), tr);
 	}
 
 	/**
-	 * Send an {@link #ERROR} log message.
+	 * Send a {@link #DEBUG} log message.
 	 * @param tag Used to identify the source of a log message.  It usually identifies
 	 *        the class or activity where the log call occurs.
 	 * @param msg The message you would like logged.
 	 */
-	public static int e(String tag, String msg) {
-		return println(ERROR, tag, msg, new LogThrowable());
+	public static int d(String tag, String msg) {
+		if (!isLoggable(DEBUG)) {
+			return 0;
+		}
+		return println(DEBUG, tag, msg, new LogThrowable());
 	}
 
 	/**
-	 * Send an {@link #ERROR} log message and log the exception.
+	 * Send a {@link #DEBUG} log message and log the exception.
 	 * @param tag Used to identify the source of a log message.  It usually identifies
 	 *        the class or activity where the log call occurs.
 	 * @param msg The message you would like logged.
 	 * @param tr An exception to log
 	 */
-	public static int e(String tag, String msg, Throwable tr) {
-		return println(ERROR, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
-	}
+	public static int d(String tag, String msg, Throwable tr) {
+		if (!isLoggable(DEBUG)) {
+			return 0;
+		}
+		return println(DEBUG, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
+	}
 
 	/**
-	 * A low-level logging call that uses the supplied Throwable to resolve information about
-	 * the class/method/etc. that requested the logging call.
-	 * @param priority The priority/type of this log message
+	 * Send an {@link #INFO} log message.
+	 */
+	public static int i() {
+		if (!isLoggable(INFO)) {
+			return 0;
+		}
+		return println(INFO, "", "", new LogThrowable());
+	}
+
+	/**
+	 * Send an {@link #INFO} log message.
+	 * @param msg The message you would like logged.
+	 */
+	public static int i(String msg) {
+		if (!isLoggable(INFO)) {
+			return 0;
+		}
+		return println(INFO, "", msg, new LogThrowable());
+	}
+
+	/**
+	 * Send an {@link #INFO} log message.
+	 * @param msg The message you would like logged.
+	 * @param tr An exception to log
+	 */
+	public static int i(String msg, Throwable tr) {
+		if (!isLoggable(INFO)) {
+			return 0;
+		}
+		return println(INFO, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	}
+
+	/**
+	 * Send an {@link #INFO} log message.
 	 * @param tag Used to identify the source of a log message.  It usually identifies
 	 *        the class or activity where the log call occurs.
 	 * @param msg The message you would like logged.
-	 * @param tr The Throwable associated with this logging call.
-	 * @return The number of bytes written.
 	 */
-	private static int println(int priority, String tag, String msg, Throwable tr) {
-		String formattedTag = tag;
-		String formattedMsg = msg;
+	public static int i(String tag, String msg) {
+		if (!isLoggable(INFO)) {
+			return 0;
+		}
+		return println(INFO, tag, msg, new LogThrowable());
+	}
 
-		StackTraceElement[] elements = tr.getStackTrace();
-		for (StackTraceElement element : elements) {
-			if (!(tr instanceof LogThrowable) || !(TextUtils.equals(element.getClassName(), LOG_CLASSNAME))) {
-				formattedTag = format(sTagFormat, sTagArgs, element, tag);
-				formattedMsg = format(sMessageFormat, sMessageArgs, element, msg);
-				break;
-			}
+	/**
+	 * Send an {@link #INFO} log message and log the exception.
+	 * @param tag Used to identify the source of a log message.  It usually identifies
+	 *        the class or activity where the log call occurs.
+	 * @param msg The message you would like logged.
+	 * @param tr An exception to log
+	 */
+	public static int i(String tag, String msg, Throwable tr) {
+		if (!isLoggable(INFO)) {
+			return 0;
 		}
-		return Log.println(priority, formattedTag, formattedMsg);
+		return println(INFO, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
 	}
 
-	/*
-	 * Constructor
+	/**
+	 * Send a {@link #WARN} log message.
 	 */
+	public static int w() {
+		if (!isLoggable(WARN)) {
+			return 0;
+		}
+		return println(WARN, "", "", new LogThrowable());
+	}
 
-	private LogEx() {}
+	/**
+	 * Send a {@link #WARN} log message.
+	 * @param msg The message you would like logged.
+	 */
+	public static int w(String msg) {
+		if (!isLoggable(WARN)) {
+			return 0;
+		}
+		return println(WARN, "", msg, new LogThrowable());
+	}
 
-	/*
-	 * Classes
+	/**
+	 * Send a {@link #WARN} log message.
+	 * @param msg The message you would like logged.
+	 * @param tr An exception to log
 	 */
+	public static int w(String msg, Throwable tr) {
+		if (!isLoggable(WARN)) {
+			return 0;
+		}
+		return println(WARN, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	}
 
 	/**
-	 * A private extension of the {@link java.lang.Throwable} class used by {@link #println(int, String, String, Throwable)} to
-	 * determine whether a Throwable was generated by this class.
+	 * Send a {@link #WARN} log message.
+	 * @param tag Used to identify the source of a log message.  It usually identifies
+	 *        the class or activity where the log call occurs.
+	 * @param msg The message you would like logged.
 	 */
-	private static class LogThrowable extends Throwable {}
+	public static int w(String tag, String msg) {
+		if (!isLoggable(WARN)) {
+			return 0;
+		}
+		return println(WARN, tag, msg, new LogThrowable());
+	}
+
+	/**
+	 * Send a {@link #WARN} log message and log the exception.
+	 * @param tag Used to identify the source of a log message.  It usually identifies
+	 *        the class or activity where the log call occurs.
+	 * @param msg The message you would like logged.
+	 * @param tr An exception to log
+	 */
+	public static int w(String tag, String msg, Throwable tr) {
+		if (!isLoggable(WARN)) {
+			return 0;
+		}
+		return println(WARN, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
+	}
+
+	/**
+	 * Send an {@link #ERROR} log message.
+	 */
+	public static int e() {
+		if (!isLoggable(ERROR)) {
+			return 0;
+		}
+		return println(ERROR, "", "", new LogThrowable());
+	}
+
+	/**
+	 * Send an {@link #ERROR} log message.
+	 * @param msg The message you would like logged.
+	 */
+	public static int e(String msg) {
+		if (!isLoggable(ERROR)) {
+			return 0;
+		}
+		return println(ERROR, "", msg, new LogThrowable());
+	}
+
+	/**
+	 * Send an {@link #ERROR} log message.
+	 * @param msg The message you would like logged.
+	 * @param tr An exception to log
+	 */
+	public static int e(String msg, Throwable tr) {
+		if (!isLoggable(ERROR)) {
+			return 0;
+		}
+		return println(ERROR, "", msg + '\n' + Log.getStackTraceString(tr), tr);
+	}
+
+	/**
+	 * Send an {@link #ERROR} log message.
+	 * @param tag Used to identify the source of a log message.  It usually identifies
+	 *        the class or activity where the log call occurs.
+	 * @param msg The message you would like logged.
+	 */
+	public static int e(String tag, String msg) {
+		if (!isLoggable(ERROR)) {
+			return 0;
+		}
+		return println(ERROR, tag, msg, new LogThrowable());
+	}
+
+	/**
+	 * Send an {@link #ERROR} log message and log the exception.
+	 * @param tag Used to identify the source of a log message.  It usually identifies
+	 *        the class or activity where the log call occurs.
+	 * @param msg The message you would like logged.
+	 * @param tr An exception to log
+	 */
+	public static int e(String tag, String msg, Throwable tr) {
+		if (!isLoggable(ERROR)) {
+			return 0;
+		}
+		return println(ERROR, tag, msg + '\n' + Log.getStackTraceString(tr), tr);
+	}
+
+	/**
+	 * Send a {@link #VERBOSE} log message formatted from the given format and argument, as by
+	 * {@link String#format(String, Object...)}. The message is only formatted, and the argument
+	 * only boxed, if {@link #VERBOSE} is loggable. The d(), i(), w() and e() overloads taking a
+	 * format and one or two numbers do the same at their levels. Other arguments are logged with
+	 * {@link #printf(int, String, Object)}.
+	 */
+	public static int v(String format, long arg) {
+		return printFormat(VERBOSE, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int v(String format, double arg) {
+		return printFormat(VERBOSE, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int v(String format, long arg1, long arg2) {
+		return printFormat(VERBOSE, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int v(String format, long arg1, double arg2) {
+		return printFormat(VERBOSE, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int v(String format, double arg1, long arg2) {
+		return printFormat(VERBOSE, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int v(String format, double arg1, double arg2) {
+		return printFormat(VERBOSE, format, arg1, arg2);
+	}
+
+	/**
+	 * Send a {@link #VERBOSE} log message supplied by the given supplier, which is only asked
+	 * for the message if {@link #VERBOSE} is loggable. The d(), i(), w() and e() overloads
+	 * taking a supplier do the same at their levels.
+	 */
+	public static int v(MessageSupplier supplier) {
+		return printSupplied(VERBOSE, supplier);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int d(String format, long arg) {
+		return printFormat(DEBUG, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int d(String format, double arg) {
+		return printFormat(DEBUG, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int d(String format, long arg1, long arg2) {
+		return printFormat(DEBUG, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int d(String format, long arg1, double arg2) {
+		return printFormat(DEBUG, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int d(String format, double arg1, long arg2) {
+		return printFormat(DEBUG, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int d(String format, double arg1, double arg2) {
+		return printFormat(DEBUG, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(MessageSupplier)
+	 */
+	public static int d(MessageSupplier supplier) {
+		return printSupplied(DEBUG, supplier);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int i(String format, long arg) {
+		return printFormat(INFO, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int i(String format, double arg) {
+		return printFormat(INFO, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int i(String format, long arg1, long arg2) {
+		return printFormat(INFO, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int i(String format, long arg1, double arg2) {
+		return printFormat(INFO, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int i(String format, double arg1, long arg2) {
+		return printFormat(INFO, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int i(String format, double arg1, double arg2) {
+		return printFormat(INFO, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(MessageSupplier)
+	 */
+	public static int i(MessageSupplier supplier) {
+		return printSupplied(INFO, supplier);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int w(String format, long arg) {
+		return printFormat(WARN, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int w(String format, double arg) {
+		return printFormat(WARN, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int w(String format, long arg1, long arg2) {
+		return printFormat(WARN, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int w(String format, long arg1, double arg2) {
+		return printFormat(WARN, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int w(String format, double arg1, long arg2) {
+		return printFormat(WARN, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int w(String format, double arg1, double arg2) {
+		return printFormat(WARN, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(MessageSupplier)
+	 */
+	public static int w(MessageSupplier supplier) {
+		return printSupplied(WARN, supplier);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int e(String format, long arg) {
+		return printFormat(ERROR, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int e(String format, double arg) {
+		return printFormat(ERROR, format, arg);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int e(String format, long arg1, long arg2) {
+		return printFormat(ERROR, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int e(String format, long arg1, double arg2) {
+		return printFormat(ERROR, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int e(String format, double arg1, long arg2) {
+		return printFormat(ERROR, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(String, long)
+	 */
+	public static int e(String format, double arg1, double arg2) {
+		return printFormat(ERROR, format, arg1, arg2);
+	}
+
+	/**
+	 * @see #v(MessageSupplier)
+	 */
+	public static int e(MessageSupplier supplier) {
+		return printSupplied(ERROR, supplier);
+	}
+
+	/**
+	 * Send a log message formatted from the given format and argument, as by
+	 * {@link String#format(String, Object...)}, for arguments that are not numbers. Unlike
+	 * d(String, String), which takes a tag and a message, this always treats its String as a
+	 * format. The message is only formatted if the priority is loggable, but the argument is
+	 * boxed by the caller, so prefer the level overloads for numbers.
+	 * @param priority The priority, from {@link #VERBOSE} to {@link #ASSERT}.
+	 */
+	public static int printf(int priority, String format, Object arg) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg), new LogThrowable());
+	}
+
+	/**
+	 * @see #printf(int, String, Object)
+	 */
+	public static int printf(int priority, String format, Object arg1, Object arg2) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg1, arg2), new LogThrowable());
+	}
+
+	private static int printFormat(int priority, String format, long arg) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg), new LogThrowable());
+	}
+
+	private static int printFormat(int priority, String format, double arg) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg), new LogThrowable());
+	}
+
+	private static int printFormat(int priority, String format, long arg1, long arg2) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg1, arg2), new LogThrowable());
+	}
+
+	private static int printFormat(int priority, String format, long arg1, double arg2) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg1, arg2), new LogThrowable());
+	}
+
+	private static int printFormat(int priority, String format, double arg1, long arg2) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg1, arg2), new LogThrowable());
+	}
+
+	private static int printFormat(int priority, String format, double arg1, double arg2) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", String.format(format, arg1, arg2), new LogThrowable());
+	}
+
+	private static int printSupplied(int priority, MessageSupplier supplier) {
+		if (!isLoggable(priority)) {
+			return 0;
+		}
+		return println(priority, "", supplier.get(), new LogThrowable());
+	}
+
+	/**
+	 * A low-level logging call that uses the supplied Throwable to resolve information about
+	 * the class/method/etc. that requested the logging call.
+	 * @param priority The priority/type of this log message
+	 * @param tag Used to identify the source of a log message.  It usually identifies
+	 *        the class or activity where the log call occurs.
+	 * @param msg The message you would like logged.
+	 * @param tr The Throwable associated with this logging call.
+	 * @return The number of bytes written, or 0 when logging asynchronously.
+	 */
+	private static int println(int priority, String tag, String msg, Throwable tr) {
+		return println(priority, tag, msg, tr, null);
+	}
+
+	/**
+	 * A low-level logging call for calls made through {@link Injected}, which supply their call
+	 * site instead of a Throwable.
+	 * @param site The {@link Injected} site string of the call site.
+	 */
+	private static int println(int priority, String tag, String msg, String site) {
+		return println(priority, tag, msg, null, site);
+	}
+
+	private static int println(int priority, String tag, String msg, Throwable tr,
+	                           String site) {
+		final long timeMillis = System.currentTimeMillis();
+		AsyncWriter writer = sAsyncWriter;
+		if (writer != null && writer.enqueue(timeMillis, priority, tag, msg, tr, site)) {
+			return 0;
+		}
+		return write(timeMillis, priority, tag, msg, tr, site);
+	}
+
+	/**
+	 * Resolves the call site from the supplied site string or, failing that, Throwable, formats
+	 * the tag and message and writes them to the log and to any sinks.
+	 * @return The number of bytes written to the log.
+	 */
+	private static int write(long timeMillis, int priority, String tag, String msg,
+	                         Throwable tr, String siteKey) {
+		CallSite site = null;
+		if (siteKey != null) {
+			site = getCallSite(siteKey);
+		} else {
+			StackTraceElement[] elements = tr.getStackTrace();
+			for (StackTraceElement element : elements) {
+				if (!(tr instanceof LogThrowable) || !(TextUtils.equals(element.getClassName(), LOG_CLASSNAME))) {
+					site = getCallSite(element);
+					break;
+				}
+			}
+		}
+
+		String formattedTag = tag;
+		String formattedMsg = msg;
+		StackTraceElement frame = null;
+		final RateLimits limits = sRateLimits;
+		if (site != null) {
+			if (!site.isLoggable(priority, tag)) {
+				return 0;
+			}
+			// Injected calls were limited before their message was formatted.
+			if (limits != null && siteKey == null && !tryAcquire(site, limits, priority, tag)) {
+				sSuppressedRecordCount.incrementAndGet();
+				writeSuppressionSummaries(false);
+				return 0;
+			}
+			formattedTag = sTagTemplate.render(site, tag);
+			formattedMsg = sMessageTemplate.render(site, msg);
+			frame = site.element;
+		}
+		int written = Log.println(priority, formattedTag, formattedMsg);
+		for (LogSink sink : sSinks) {
+			sink.write(timeMillis, priority, formattedTag, formattedMsg, frame);
+		}
+		if (limits != null) {
+			writeSuppressionSummaries(false);
+		}
+		return written;
+	}
+
+	/*
+	 * Constructor
+	 */
+
+	private LogEx() {}
+
+	/*
+	 * Classes
+	 */
+
+	/**
+	 * A private extension of the {@link java.lang.Throwable} class used by {@link #println(int, String, String, Throwable)} to
+	 * determine whether a Throwable was generated by this class.
+	 */
+	private static class LogThrowable extends Throwable {}
+
+	/**
+	 * Logging methods that take their call site as a constant instead of capturing the stack.
+	 * The build-time call site transform rewrites calls to the LogEx methods without a
+	 * Throwable into calls to these, which are not meant to be called directly. The methods
+	 * taking a Throwable already have a stack, and are left alone.
+	 *
+	 * <p>A site string holds the class name, method name, line number and file name of the
+	 * call site, separated by '/', as in {@code "com.example.Foo/onDraw/42/Foo.java"}. The line
+	 * number is -1 and the file name empty when unknown.</p>
+	 */
+	public static final class Injected {
+
+		private Injected() {}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String site) {
+			if (!isAllowed(VERBOSE, "", site)) {
+				return 0;
+			}
+			return println(VERBOSE, "", "", site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String msg, String site) {
+			if (!isAllowed(VERBOSE, "", site)) {
+				return 0;
+			}
+			return println(VERBOSE, "", msg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String tag, String msg, String site) {
+			if (!isAllowed(VERBOSE, tag, site)) {
+				return 0;
+			}
+			return println(VERBOSE, tag, msg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String site) {
+			if (!isAllowed(DEBUG, "", site)) {
+				return 0;
+			}
+			return println(DEBUG, "", "", site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String msg, String site) {
+			if (!isAllowed(DEBUG, "", site)) {
+				return 0;
+			}
+			return println(DEBUG, "", msg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String tag, String msg, String site) {
+			if (!isAllowed(DEBUG, tag, site)) {
+				return 0;
+			}
+			return println(DEBUG, tag, msg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String site) {
+			if (!isAllowed(INFO, "", site)) {
+				return 0;
+			}
+			return println(INFO, "", "", site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String msg, String site) {
+			if (!isAllowed(INFO, "", site)) {
+				return 0;
+			}
+			return println(INFO, "", msg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String tag, String msg, String site) {
+			if (!isAllowed(INFO, tag, site)) {
+				return 0;
+			}
+			return println(INFO, tag, msg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String site) {
+			if (!isAllowed(WARN, "", site)) {
+				return 0;
+			}
+			return println(WARN, "", "", site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String msg, String site) {
+			if (!isAllowed(WARN, "", site)) {
+				return 0;
+			}
+			return println(WARN, "", msg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String tag, String msg, String site) {
+			if (!isAllowed(WARN, tag, site)) {
+				return 0;
+			}
+			return println(WARN, tag, msg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String site) {
+			if (!isAllowed(ERROR, "", site)) {
+				return 0;
+			}
+			return println(ERROR, "", "", site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String msg, String site) {
+			if (!isAllowed(ERROR, "", site)) {
+				return 0;
+			}
+			return println(ERROR, "", msg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String tag, String msg, String site) {
+			if (!isAllowed(ERROR, tag, site)) {
+				return 0;
+			}
+			return println(ERROR, tag, msg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String format, long arg, String site) {
+			return printFormat(VERBOSE, format, arg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String format, double arg, String site) {
+			return printFormat(VERBOSE, format, arg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String format, long arg1, long arg2, String site) {
+			return printFormat(VERBOSE, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String format, long arg1, double arg2, String site) {
+			return printFormat(VERBOSE, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String format, double arg1, long arg2, String site) {
+			return printFormat(VERBOSE, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(String format, double arg1, double arg2, String site) {
+			return printFormat(VERBOSE, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#VERBOSE} log message from the given call site.
+		 */
+		public static int v(MessageSupplier supplier, String site) {
+			return printSupplied(VERBOSE, supplier, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String format, long arg, String site) {
+			return printFormat(DEBUG, format, arg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String format, double arg, String site) {
+			return printFormat(DEBUG, format, arg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String format, long arg1, long arg2, String site) {
+			return printFormat(DEBUG, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String format, long arg1, double arg2, String site) {
+			return printFormat(DEBUG, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String format, double arg1, long arg2, String site) {
+			return printFormat(DEBUG, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(String format, double arg1, double arg2, String site) {
+			return printFormat(DEBUG, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#DEBUG} log message from the given call site.
+		 */
+		public static int d(MessageSupplier supplier, String site) {
+			return printSupplied(DEBUG, supplier, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String format, long arg, String site) {
+			return printFormat(INFO, format, arg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String format, double arg, String site) {
+			return printFormat(INFO, format, arg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String format, long arg1, long arg2, String site) {
+			return printFormat(INFO, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String format, long arg1, double arg2, String site) {
+			return printFormat(INFO, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String format, double arg1, long arg2, String site) {
+			return printFormat(INFO, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(String format, double arg1, double arg2, String site) {
+			return printFormat(INFO, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#INFO} log message from the given call site.
+		 */
+		public static int i(MessageSupplier supplier, String site) {
+			return printSupplied(INFO, supplier, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String format, long arg, String site) {
+			return printFormat(WARN, format, arg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String format, double arg, String site) {
+			return printFormat(WARN, format, arg, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String format, long arg1, long arg2, String site) {
+			return printFormat(WARN, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String format, long arg1, double arg2, String site) {
+			return printFormat(WARN, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String format, double arg1, long arg2, String site) {
+			return printFormat(WARN, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(String format, double arg1, double arg2, String site) {
+			return printFormat(WARN, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send a {@link LogEx#WARN} log message from the given call site.
+		 */
+		public static int w(MessageSupplier supplier, String site) {
+			return printSupplied(WARN, supplier, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String format, long arg, String site) {
+			return printFormat(ERROR, format, arg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String format, double arg, String site) {
+			return printFormat(ERROR, format, arg, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String format, long arg1, long arg2, String site) {
+			return printFormat(ERROR, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String format, long arg1, double arg2, String site) {
+			return printFormat(ERROR, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String format, double arg1, long arg2, String site) {
+			return printFormat(ERROR, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(String format, double arg1, double arg2, String site) {
+			return printFormat(ERROR, format, arg1, arg2, site);
+		}
+
+		/**
+		 * Send an {@link LogEx#ERROR} log message from the given call site.
+		 */
+		public static int e(MessageSupplier supplier, String site) {
+			return printSupplied(ERROR, supplier, site);
+		}
+
+		/**
+		 * Send a log message at the given priority from the given call site.
+		 */
+		public static int printf(int priority, String format, Object arg, String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg), site);
+		}
+
+		/**
+		 * Send a log message at the given priority from the given call site.
+		 */
+		public static int printf(int priority, String format, Object arg1, Object arg2,
+		                         String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg1, arg2), site);
+		}
+
+		private static int printFormat(int priority, String format, long arg, String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg), site);
+		}
+
+		private static int printFormat(int priority, String format, double arg, String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg), site);
+		}
+
+		private static int printFormat(int priority, String format, long arg1, long arg2,
+		                               String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg1, arg2), site);
+		}
+
+		private static int printFormat(int priority, String format, long arg1, double arg2,
+		                               String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg1, arg2), site);
+		}
+
+		private static int printFormat(int priority, String format, double arg1, long arg2,
+		                               String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg1, arg2), site);
+		}
+
+		private static int printFormat(int priority, String format, double arg1, double arg2,
+		                               String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", String.format(format, arg1, arg2), site);
+		}
+
+		private static int printSupplied(int priority, MessageSupplier supplier, String site) {
+			if (!isAllowed(priority, "", site)) {
+				return 0;
+			}
+			return println(priority, "", supplier.get(), site);
+		}
+	}
+
+	/**
+	 * A bounded ring buffer of log records with any number of logging threads and a single
+	 * background thread that writes them. A logging thread claims a sequence by advancing the
+	 * tail with a compare-and-set, fills in the slot for that sequence and then publishes it
+	 * by writing the slot's sequence. The background thread advances the head as it takes a
+	 * record, which frees the slot for reuse, and the written sequence once it has written it.
+	 * Stopping closes the tail, so that no sequence can be claimed that the background thread
+	 * will not write.
+	 *
+	 * <p>Only the Throwable, or site string, is captured on the logging thread. Its stack elements are
+	 * resolved, along with the call site, on the background thread.</p>
+	 */
+	private static final class AsyncWriter implements Runnable {
+		private final Record[] mRecords;
+		private final int mMask;
+		private final Thread mThread;
+
+		// Set in the tail once stopped.
+		private static final long CLOSED = Long.MIN_VALUE;
+
+		// The next sequence to be claimed by a logging thread, with CLOSED set once stopped.
+		private final AtomicLong mTail = new AtomicLong();
+		// The next sequence to be taken. Only advanced by the background thread.
+		private volatile long mHead;
+		// The next sequence to be written. Only advanced by the background thread.
+		private volatile long mWritten;
+		// Whether the background thread is parked, or about to park, waiting for a record.
+		private volatile boolean mWaiting;
+		private volatile boolean mStopped;
+		private final AtomicLong mSampleCount = new AtomicLong();
+
+		AsyncWriter(int capacity) {
+			int size = Integer.highestOneBit(capacity);
+			if (size < capacity) {
+				size <<= 1;
+			}
+			mRecords = new Record[size];
+			for (int i = 0; i < size; i++) {
+				mRecords[i] = new Record();
+			}
+			mMask = size - 1;
+			mThread = new Thread(this, "LogEx");
+			mThread.setDaemon(true);
+		}
+
+		void start() {
+			mThread.start();
+		}
+
+		/**
+		 * Buffers a record, or drops it if the buffer is full.
+		 * @return False if the writer has been stopped, in which case the caller must write
+		 * the record itself.
+		 */
+		boolean enqueue(long timeMillis, int priority, String tag, String msg, Throwable tr,
+		                String site) {
+			final int capacity = mRecords.length;
+			long sequence;
+			while (true) {
+				sequence = mTail.get();
+				if ((sequence & CLOSED) != 0) {
+					return false;
+				}
+				final long used = sequence - mHead;
+				final int policy = sOverflowPolicy;
+				if (used >= capacity) {
+					// The background thread cannot wait for itself, as when a sink logs.
+					if (policy == OVERFLOW_BLOCK && Thread.currentThread() != mThread) {
+						LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+						continue;
+					}
+					sDroppedRecordCount.incrementAndGet();
+					return true;
+				}
+				if (policy == OVERFLOW_SAMPLE && used >= capacity / 2 &&
+						mSampleCount.getAndIncrement() % sSampleRate != 0) {
+					sSampledOutRecordCount.incrementAndGet();
+					return true;
+				}
+				if (mTail.compareAndSet(sequence, sequence + 1)) {
+					break;
+				}
+			}
+
+			final Record record = mRecords[(int) (sequence & mMask)];
+			record.timeMillis = timeMillis;
+			record.priority = priority;
+			record.tag = tag;
+			record.msg = msg;
+			record.throwable = tr;
+			record.site = site;
+			record.sequence = sequence + 1;
+			if (mWaiting) {
+				LockSupport.unpark(mThread);
+			}
+			return true;
+		}
+
+		@Override
+		public void run() {
+			long head = mHead;
+			while (true) {
+				final Record record = mRecords[(int) (head & mMask)];
+				if (record.sequence != head + 1) {
+					if (mStopped && (mTail.get() & ~CLOSED) == head) {
+						break;
+					}
+					// Announce the wait before checking again, so that a logging thread either
+					// sees it and unparks this thread or has already published the record.
+					mWaiting = true;
+					if (record.sequence != head + 1 && !mStopped) {
+						LockSupport.park(this);
+					}
+					mWaiting = false;
+					continue;
+				}
+
+				final long timeMillis = record.timeMillis;
+				final int priority = record.priority;
+				final String tag = record.tag;
+				final String msg = record.msg;
+				final Throwable tr = record.throwable;
+				final String site = record.site;
+				record.tag = null;
+				record.msg = null;
+				record.throwable = null;
+				record.site = null;
+				mHead = ++head;
+
+				try {
+					write(timeMillis, priority, tag, msg, tr, site);
+				} catch (RuntimeException e) {
+					// A bad format can no longer be reported to the caller, so log the record
+					// as it was given.
+					Log.println(priority, tag, msg);
+				}
+				mWritten = head;
+			}
+		}
+
+		void flush() {
+			final long target = mTail.get() & ~CLOSED;
+			while (mWritten < target && mThread.isAlive() && Thread.currentThread() != mThread) {
+				LockSupport.unpark(mThread);
+				LockSupport.parkNanos(FLUSH_WAIT_NANOS);
+			}
+		}
+
+		void stop() {
+			long tail;
+			do {
+				tail = mTail.get();
+			} while (!mTail.compareAndSet(tail, tail | CLOSED));
+			mStopped = true;
+			LockSupport.unpark(mThread);
+			boolean interrupted = false;
+			while (mThread.isAlive()) {
+				try {
+					mThread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * A slot in the asynchronous logging buffer. A record is published by writing its
+	 * sequence, one more than the sequence it was claimed with, after its other fields.
+	 */
+	private static final class Record {
+		volatile long sequence;
+		long timeMillis;
+		int priority;
+		String tag;
+		String msg;
+		Throwable throwable;
+		String site;
+	}
+
+	/**
+	 * A tag or message format compiled into literal segments and argument slots. The %s, %d,
+	 * %% and %n specifiers are rendered directly into a reused StringBuilder, without a
+	 * {@link java.util.Formatter} or boxing. Formats using any other specifier, or arguments
+	 * that %d cannot render, fall back to {@link String#format(String, Object...)}.
+	 */
+	private static final class Template {
+		final String format;
+		final Object[] args;
+		// The literal text before each slot, followed by the text after the last slot
+		final String[] literals;
+		// The argument rendered in each slot, and whether it is rendered with %d
+		final Object[] slotArgs;
+		final boolean[] slotDecimal;
+		final boolean fallback;
+		// Whether the rendered string depends on the string passed to render
+		final boolean usesString;
+
+		private Template(String format, Object[] args, String[] literals, Object[] slotArgs,
+		                 boolean[] slotDecimal, boolean fallback) {
+			this.format = format;
+			this.args = args;
+			this.literals = literals;
+			this.slotArgs = slotArgs;
+			this.slotDecimal = slotDecimal;
+			this.fallback = fallback;
+			boolean usesString = false;
+			for (Object arg : args) {
+				usesString |= (arg == Placeholder.MESSAGE);
+			}
+			this.usesString = usesString;
+		}
+
+		static Template compile(String format, Object... args) {
+			final Object[] argsCopy = (args == null ? new Object[0] : args.clone());
+			final ArrayList<String> literals = new ArrayList<String>();
+			final ArrayList<Object> slotArgs = new ArrayList<Object>();
+			final ArrayList<Boolean> slotDecimal = new ArrayList<Boolean>();
+			final StringBuilder literal = new StringBuilder();
+			boolean fallback = false;
+			final int length = format.length();
+			for (int i = 0; i < length && !fallback; i++) {
+				char c = format.charAt(i);
+				if (c != '%') {
+					literal.append(c);
+					continue;
+				}
+				if (i + 1 >= length) {
+					fallback = true;
+					break;
+				}
+				char conversion = format.charAt(++i);
+				switch (conversion) {
+					case '%':
+						literal.append('%');
+						break;
+					case 'n':
+						literal.append(System.getProperty("line.separator"));
+						break;
+					case 's':
+					case 'd':
+						if (slotArgs.size() >= argsCopy.length) {
+							// Let String.format report the missing argument.
+							fallback = true;
+							break;
+						}
+						Object arg = argsCopy[slotArgs.size()];
+						boolean decimal = (conversion == 'd');
+						if ((decimal && !isDecimalArg(arg)) ||
+								(!decimal && arg instanceof Formattable)) {
+							fallback = true;
+							break;
+						}
+						literals.add(literal.toString());
+						literal.setLength(0);
+						slotArgs.add(arg);
+						slotDecimal.add(decimal);
+						break;
+					default:
+						fallback = true;
+				}
+			}
+			literals.add(literal.toString());
+
+			final boolean[] decimals = new boolean[slotDecimal.size()];
+			for (int i = 0; i < decimals.length; i++) {
+				decimals[i] = slotDecimal.get(i);
+			}
+			return new Template(format, argsCopy, literals.toArray(new String[literals.size()]),
+					slotArgs.toArray(), decimals, fallback);
+		}
+
+		private static boolean isDecimalArg(Object arg) {
+			return arg == Placeholder.LINE_NUMBER || arg == Placeholder.HASH_CODE ||
+					arg instanceof Integer || arg instanceof Long || arg instanceof Short ||
+					arg instanceof Byte;
+		}
+
+		String render(CallSite site, String str) {
+			if (fallback) {
+				return format(format, args, site, str);
+			}
+			StringBuilder builder = sBuilder.get();
+			builder.setLength(0);
+			builder.append(literals[0]);
+			for (int i = 0; i < slotArgs.length; i++) {
+				Object arg = slotArgs[i];
+				if (arg instanceof Placeholder) {
+					appendPlaceholder(builder, (Placeholder) arg, site, str);
+				} else if (slotDecimal[i]) {
+					builder.append(((Number) arg).longValue());
+				} else {
+					builder.append(arg);
+				}
+				builder.append(literals[i + 1]);
+			}
+			String rendered = builder.toString();
+			if (builder.capacity() > MAX_BUILDER_CAPACITY) {
+				sBuilder.remove();
+			}
+			return rendered;
+		}
+
+		private static void appendPlaceholder(StringBuilder builder, Placeholder placeholder,
+		                                      CallSite site, String str) {
+			switch (placeholder) {
+				case CLASS_NAME:
+					builder.append(site.className);
+					break;
+				case FILE_NAME:
+					builder.append(site.fileName);
+					break;
+				case LINE_NUMBER:
+					builder.append(site.lineNumber);
+					break;
+				case METHOD_NAME:
+					builder.append(site.methodName);
+					break;
+				case HASH_CODE:
+					builder.append(site.hashCode);
+					break;
+				case MESSAGE:
+					builder.append(str);
+					break;
+				case SIMPLE_CLASS_NAME:
+					builder.append(site.simpleClassName);
+					break;
+				case PACKAGE:
+					builder.append(site.packageName);
+					break;
+				default:
+					builder.append(UNKNOWN);
+			}
+		}
+	}
+
+	/**
+	 * The metadata of a single logging call site, with its class names resolved once.
+	 */
+	private static final class CallSite {
+		final StackTraceElement element;
+		final String className;
+		final String simpleClassName;
+		final String packageName;
+		final String fileName;
+		final String methodName;
+		final int lineNumber;
+		final int hashCode;
+		// The level of the site for the last tag it logged with, resolved again whenever the
+		// tag, the tag format or the level table changes
+		SiteLevel level;
+
+		CallSite(StackTraceElement element) {
+			this.element = element;
+			fileName = element.getFileName();
+			methodName = element.getMethodName();
+			lineNumber = element.getLineNumber();
+			hashCode = element.hashCode();
+
+			String name = UNKNOWN;
+			String simpleName = UNKNOWN;
+			String packageName = UNKNOWN;
+			try {
+				Class cls = Class.forName(element.getClassName());
+				name = cls.getName();
+				packageName = (cls.getPackage() == null ? "" : cls.getPackage().getName());
+				// Anonymous and local classes have no simple name, so use the enclosing class.
+				simpleName = cls.getSimpleName();
+				while (TextUtils.isEmpty(simpleName)) {
+					cls = cls.getEnclosingClass();
+					if (cls == null)
+						simpleName = UNKNOWN;
+					else
+						simpleName = cls.getSimpleName();
+				}
+			} catch (ClassNotFoundException e) {
+				// Leave the names unknown.
+			}
+			className = name;
+			simpleClassName = simpleName;
+			this.packageName = packageName;
+		}
+
+		/**
+		 * Returns whether a record logged at the given priority is at or above the level of
+		 * this site.
+		 */
+		boolean isLoggable(int priority, String tag) {
+			final LevelTable levels = sLevels;
+			final Template template = sTagTemplate;
+			SiteLevel level = this.level;
+			if (level == null || !level.matches(levels, template, tag)) {
+				level = new SiteLevel(levels, template, tag,
+						getLevel(template.render(this, tag), packageName));
+				this.level = level;
+			}
+			return priority >= level.level;
+		}
+	}
+
+	/**
+	 * The level of a call site under a single level table and tag format, for the tag it was
+	 * resolved with.
+	 */
+	private static final class SiteLevel {
+		final LevelTable levels;
+		final Template template;
+		final String tag;
+		final int level;
+
+		SiteLevel(LevelTable levels, Template template, String tag, int level) {
+			this.levels = levels;
+			this.template = template;
+			this.tag = tag;
+			this.level = level;
+		}
+
+		boolean matches(LevelTable levels, Template template, String tag) {
+			return this.levels == levels && this.template == template &&
+					(!template.usesString || TextUtils.equals(this.tag, tag));
+		}
+	}
+
+	/**
+	 * A snapshot of the global level, the levels set for tags and packages and the system
+	 * property levels of the tags seen so far. Snapshots are built and then published, and
+	 * never changed once published.
+	 */
+	private static final class LevelTable {
+		final int globalLevel;
+		final HashMap<String, Integer> tags;
+		final HashMap<String, Integer> packages;
+		// The system property level of each tag seen, or NO_LEVEL if it has none
+		final HashMap<String, Integer> systemTags;
+		// The lowest level of any call site, checked before a call site is resolved
+		final int minLevel;
+
+		LevelTable(int globalLevel, HashMap<String, Integer> tags,
+		           HashMap<String, Integer> packages, HashMap<String, Integer> systemTags) {
+			this.globalLevel = globalLevel;
+			this.tags = tags;
+			this.packages = packages;
+			this.systemTags = systemTags;
+
+			int minLevel = globalLevel;
+			for (Integer level : tags.values()) {
+				minLevel = Math.min(minLevel, level);
+			}
+			for (Integer level : packages.values()) {
+				minLevel = Math.min(minLevel, level);
+			}
+			for (Integer level : systemTags.values()) {
+				if (level != NO_LEVEL) {
+					minLevel = Math.min(minLevel, level);
+				}
+			}
+			this.minLevel = minLevel;
+		}
+
+		int getLevel(String tag, int systemLevel, String packageName) {
+			Integer level = tags.get(tag);
+			if (level != null) {
+				return level;
+			}
+			if (systemLevel != NO_LEVEL) {
+				return systemLevel;
+			}
+			if (packageName != null && !packages.isEmpty()) {
+				String name = packageName;
+				while (true) {
+					level = packages.get(name);
+					if (level != null) {
+						return level;
+					}
+					final int end = name.lastIndexOf('.');
+					if (end < 0) {
+						break;
+					}
+					name = name.substring(0, end);
+				}
+			}
+			return globalLevel;
+		}
+	}
+
+	/**
+	 * The rate and sample probability applied to each call site at a level or with a tag. A
+	 * tag's limit may leave either unset, as NaN, to use the level's.
+	 */
+	private static final class Limit {
+		static final Limit NONE = new Limit(UNLIMITED, 1, 1.0f);
+		static final Limit UNSET = new Limit(Float.NaN, 1, Float.NaN);
+
+		final float rate;
+		final int burst;
+		final float probability;
+
+		Limit(float rate, int burst, float probability) {
+			this.rate = rate;
+			this.burst = burst;
+			this.probability = probability;
+		}
+
+		Limit withRate(float rate, int burst) {
+			if (!(rate > 0.0f)) {
+				throw new IllegalArgumentException("recordsPerSecond must be positive");
+			}
+			if (burst < 1) {
+				throw new IllegalArgumentException("burst must be at least 1");
+			}
+			return new Limit(rate, burst, probability);
+		}
+
+		Limit withProbability(float probability) {
+			if (!(probability >= 0.0f && probability <= 1.0f)) {
+				throw new IllegalArgumentException("probability must be from 0 to 1");
+			}
+			return new Limit(rate, burst, probability);
+		}
+
+		Limit orElse(Limit limit) {
+			return new Limit(Float.isNaN(rate) ? limit.rate : rate,
+					Float.isNaN(rate) ? limit.burst : burst,
+					Float.isNaN(probability) ? limit.probability : probability);
+		}
+
+		boolean isUnlimited() {
+			return rate == UNLIMITED && probability >= 1.0f;
+		}
+	}
+
+	/**
+	 * A snapshot of the limits for each level and tag. Snapshots are copied, changed and then
+	 * published, and never changed once published.
+	 */
+	private static final class RateLimits {
+		final Limit[] levels;
+		final HashMap<String, Limit> tags;
+
+		private RateLimits(Limit[] levels, HashMap<String, Limit> tags) {
+			this.levels = levels;
+			this.tags = tags;
+		}
+
+		static RateLimits copyOf(RateLimits limits) {
+			if (limits == null) {
+				Limit[] levels = new Limit[ASSERT + 1];
+				for (int i = 0; i < levels.length; i++) {
+					levels[i] = Limit.NONE;
+				}
+				return new RateLimits(levels, new HashMap<String, Limit>());
+			}
+			return new RateLimits(limits.levels.clone(), new HashMap<String, Limit>(limits.tags));
+		}
+
+		Limit getTagLimit(String tag) {
+			Limit limit = tags.get(tag);
+			return (limit == null ? Limit.UNSET : limit);
+		}
+
+		Limit getLimit(int priority, String tag) {
+			Limit limit = tags.get(tag);
+			return (limit == null ? levels[priority] : limit.orElse(levels[priority]));
+		}
+	}
+
+	/**
+	 * A token bucket and sampler for a single call site at a single priority. Records that are
+	 * suppressed are counted until they are summarized.
+	 */
+	private static final class RateLimiter {
+		final RateLimits limits;
+		final int priority;
+		final String tag;
+		private final boolean mUnlimited;
+		private final double mTokensPerNano;
+		private final int mBurst;
+		private final float mProbability;
+
+		private double mTokens;
+		private long mLastNanos;
+		private int mSeed;
+		private long mSuppressedCount;
+
+		RateLimiter(RateLimits limits, Limit limit, int priority, String tag) {
+			this.limits = limits;
+			this.priority = priority;
+			this.tag = tag;
+			mUnlimited = limit.isUnlimited();
+			mTokensPerNano = limit.rate / 1.0e9;
+			mBurst = limit.burst;
+			mProbability = limit.probability;
+			mTokens = limit.burst;
+			mLastNanos = System.nanoTime();
+			mSeed = System.identityHashCode(this) | 1;
+		}
+
+		boolean tryAcquire() {
+			if (mUnlimited) {
+				return true;
+			}
+			synchronized (this) {
+				if (mProbability < 1.0f && nextFloat() >= mProbability) {
+					mSuppressedCount++;
+					return false;
+				}
+				if (mTokensPerNano != Double.POSITIVE_INFINITY) {
+					final long now = System.nanoTime();
+					mTokens = Math.min(mBurst, mTokens + (now - mLastNanos) * mTokensPerNano);
+					mLastNanos = now;
+					if (mTokens < 1.0) {
+						mSuppressedCount++;
+						return false;
+					}
+					mTokens -= 1.0;
+				}
+				return true;
+			}
+		}
+
+		synchronized void addSuppressedCount(long count) {
+			mSuppressedCount += count;
+		}
+
+		synchronized long takeSuppressedCount() {
+			final long count = mSuppressedCount;
+			mSuppressedCount = 0L;
+			return count;
+		}
+
+		// A xorshift generator, which is plenty for sampling and needs no allocation.
+		private float nextFloat() {
+			mSeed ^= mSeed << 13;
+			mSeed ^= mSeed >>> 17;
+			mSeed ^= mSeed << 5;
+			return (mSeed >>> 8) / (float) (1 << 24);
+		}
+	}
+
+	/**
+	 * A named section of code timed with {@link #beginSection(Section)} and
+	 * {@link #endSection(Section, long)}. Each section keeps how many times it ran, its total and
+	 * longest time and a histogram of its times. Create sections with
+	 * {@link #newSection(String)}.
+	 */
+	public static final class Section {
+		private final String mName;
+		private final String mTraceName;
+		private final AtomicLong mCount = new AtomicLong();
+		private final AtomicLong mTotalNanos = new AtomicLong();
+		private final AtomicLong mMaxNanos = new AtomicLong();
+		private final AtomicLongArray mBuckets = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+		private Section(String name) {
+			mName = name;
+			mTraceName = (name.length() > MAX_TRACE_NAME_LENGTH ?
+					name.substring(0, MAX_TRACE_NAME_LENGTH) : name);
+		}
+
+		public String getName() {
+			return mName;
+		}
+
+		public long getCount() {
+			return mCount.get();
+		}
+
+		public long getTotalNanos() {
+			return mTotalNanos.get();
+		}
+
+		public long getMaxNanos() {
+			return mMaxNanos.get();
+		}
+
+		/**
+		 * Returns the number of times in each bucket.
+		 * @see #HISTOGRAM_BUCKETS
+		 */
+		public long[] getHistogram() {
+			final long[] histogram = new long[HISTOGRAM_BUCKETS];
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+				histogram[i] = mBuckets.get(i);
+			}
+			return histogram;
+		}
+
+		/**
+		 * Returns the upper bound of the histogram bucket that the given percentile of times
+		 * falls in, or the longest time if that is shorter.
+		 * @param percentile The percentile, from 0 to 1.
+		 */
+		public long getPercentileNanos(float percentile) {
+			final long count = mCount.get();
+			if (count == 0L) {
+				return 0L;
+			}
+			final long target = Math.max(1L, (long) Math.ceil(percentile * count));
+			long seen = 0L;
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+				seen += mBuckets.get(i);
+				if (seen >= target) {
+					return Math.min(i == 0 ? 0L : (1L << i) - 1L, mMaxNanos.get());
+				}
+			}
+			return mMaxNanos.get();
+		}
+
+		void record(long nanos) {
+			if (nanos < 0L) {
+				nanos = 0L;
+			}
+			mCount.incrementAndGet();
+			mTotalNanos.addAndGet(nanos);
+			long max = mMaxNanos.get();
+			while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+				max = mMaxNanos.get();
+			}
+			mBuckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+		}
+
+		void reset() {
+			mCount.set(0L);
+			mTotalNanos.set(0L);
+			mMaxNanos.set(0L);
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+				mBuckets.set(i, 0L);
+			}
+		}
+	}
+
+	/**
+	 * A named count of events, such as cache misses, counted with {@link #increment(Counter)}.
+	 * Create counters with {@link #newCounter(String)}.
+	 */
+	public static final class Counter {
+		private final String mName;
+		private final AtomicLong mCount = new AtomicLong();
+
+		private Counter(String name) {
+			mName = name;
+		}
+
+		public String getName() {
+			return mName;
+		}
+
+		public long getCount() {
+			return mCount.get();
+		}
+	}
+
+	/**
+	 * Supplies a log message only once it is known that it will be logged. Keep suppliers in
+	 * fields, or otherwise create them only once, so that filtered logging calls allocate
+	 * nothing.
+	 */
+	public interface MessageSupplier {
+		String get();
+	}
 
 	/*
 	 * Enums
@@ -0,0 +1,19 @@
+package com.slaterama.roundedbutton;
+
+/**
+ * A destination for {@link LogEx} records besides the log.
+ * @see LogEx#addSink(LogSink)
+ */
+public interface LogSink {
+
+	/**
+	 * Writes a record that LogEx has written to the log.
+	 * @param timeMillis The time at which the record was logged, in milliseconds since the
+	 *                   epoch.
+	 * @param priority The priority of the record.
+	 * @param tag The formatted tag.
+	 * @param msg The formatted message.
+	 * @param frame The stack frame of the call site, or null if it could not be found.
+	 */
+	void write(long timeMillis, int priority, String tag, String msg, StackTraceElement frame);
+}
@@ -0,0 +1,160 @@
+package com.slaterama.roundedbutton;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import static com.slaterama.roundedbutton.MappedLogSink.HEADER_HEAD;
+import static com.slaterama.roundedbutton.MappedLogSink.HEADER_RING_SIZE;
+import static com.slaterama.roundedbutton.MappedLogSink.HEADER_SIZE;
+import static com.slaterama.roundedbutton.MappedLogSink.HEADER_STRING_TABLE_SIZE;
+import static com.slaterama.roundedbutton.MappedLogSink.HEADER_TAIL;
+import static com.slaterama.roundedbutton.MappedLogSink.NO_ID;
+import static com.slaterama.roundedbutton.MappedLogSink.RECORD_HEADER_SIZE;
+import static com.slaterama.roundedbutton.MappedLogSink.RECORD_MESSAGE_LENGTH;
+import static com.slaterama.roundedbutton.MappedLogSink.RECORD_PRIORITY;
+import static com.slaterama.roundedbutton.MappedLogSink.RECORD_SITE_ID;
+import static com.slaterama.roundedbutton.MappedLogSink.RECORD_SIZE;
+import static com.slaterama.roundedbutton.MappedLogSink.RECORD_TAG_ID;
+import static com.slaterama.roundedbutton.MappedLogSink.RECORD_TIME;
+import static com.slaterama.roundedbutton.MappedLogSink.TAG_PREFIX;
+import static com.slaterama.roundedbutton.MappedLogSink.UTF_8;
+
+/**
+ * Turns a file written by {@link MappedLogSink} back into text, one line per record, oldest
+ * first:
+ *
+ * <pre>
+ * 10-18 14:02:11.317 I/FloatingActionButton [com.example.Foo.bar(Foo.java:42)]: message
+ * </pre>
+ *
+ * <p>The decoder only uses the Java library, so files pulled off a device can be read on any
+ * JVM with {@code java com.slaterama.roundedbutton.MappedLogDecoder <file>}.</p>
+ */
+public final class MappedLogDecoder {
+
+	private static final String UNKNOWN = "?";
+
+	private MappedLogDecoder() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: MappedLogDecoder <file>");
+			System.exit(1);
+		}
+		PrintStream out = System.out;
+		decode(new File(args[0]), out);
+		out.flush();
+	}
+
+	/**
+	 * Decodes the records in the given file.
+	 * @return The number of records decoded.
+	 * @throws IOException If the file could not be read or was not written by a
+	 * {@link MappedLogSink}.
+	 */
+	public static int decode(File file, Appendable out) throws IOException {
+		final byte[] bytes;
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			if (input.length() > Integer.MAX_VALUE) {
+				throw new IOException("Not a log file: " + file);
+			}
+			bytes = new byte[(int) input.length()];
+			input.readFully(bytes);
+		} finally {
+			input.close();
+		}
+		return decode(ByteBuffer.wrap(bytes), out);
+	}
+
+	/**
+	 * Decodes the records in the given buffer, which holds the contents of a log file.
+	 * @return The number of records decoded.
+	 * @throws IOException If the buffer does not hold a log file, or appending fails.
+	 */
+	public static int decode(ByteBuffer buffer, Appendable out) throws IOException {
+		if (!MappedLogSink.isValidHeader(buffer)) {
+			throw new IOException("Not a log file");
+		}
+		final String[] strings = MappedLogSink.readStrings(buffer);
+		if (strings == null) {
+			throw new IOException("Corrupt string table");
+		}
+		final int ringOffset = HEADER_SIZE + buffer.getInt(HEADER_STRING_TABLE_SIZE);
+		final int ringSize = buffer.getInt(HEADER_RING_SIZE);
+		final long head = buffer.getLong(HEADER_HEAD);
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+		final Date date = new Date();
+
+		int count = 0;
+		long position = buffer.getLong(HEADER_TAIL);
+		while (position < head) {
+			final int offset = (int) (position % ringSize);
+			final int record = ringOffset + offset;
+			final int size = buffer.getInt(record + RECORD_SIZE);
+			if (size < 0) {
+				// Padding up to the end of the ring.
+				position -= size;
+				continue;
+			}
+			final int messageLength = buffer.getInt(record + RECORD_MESSAGE_LENGTH);
+			if (size < RECORD_HEADER_SIZE || offset + size > ringSize || messageLength < 0 ||
+					RECORD_HEADER_SIZE + messageLength > size) {
+				throw new IOException("Corrupt record at " + position);
+			}
+
+			date.setTime(buffer.getLong(record + RECORD_TIME));
+			final String tag = getString(strings, buffer.getShort(record + RECORD_TAG_ID));
+			final String site = getString(strings, buffer.getShort(record + RECORD_SITE_ID));
+			final byte[] message = new byte[messageLength];
+			for (int i = 0; i < messageLength; i++) {
+				message[i] = buffer.get(record + RECORD_HEADER_SIZE + i);
+			}
+
+			out.append(dateFormat.format(date))
+					.append(' ')
+					.append(getPriorityLetter(buffer.get(record + RECORD_PRIORITY)))
+					.append('/')
+					.append(tag.startsWith(TAG_PREFIX) ? tag.substring(TAG_PREFIX.length()) : tag)
+					.append(" [")
+					.append(site)
+					.append("]: ")
+					.append(new String(message, UTF_8))
+					.append('\n');
+			count++;
+			position += size;
+		}
+		return count;
+	}
+
+	private static String getString(String[] strings, int id) {
+		return (id == NO_ID || id < 0 || id >= strings.length ? UNKNOWN : strings[id]);
+	}
+
+	// Uses the android.util.Log priorities, without depending on the Android library.
+	private static char getPriorityLetter(int priority) {
+		switch (priority) {
+			case 2:
+				return 'V';
+			case 3:
+				return 'D';
+			case 4:
+				return 'I';
+			case 5:
+				return 'W';
+			case 6:
+				return 'E';
+			case 7:
+				return 'A';
+			default:
+				return '?';
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package com.slaterama.roundedbutton;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+/**
+ * A {@link LogSink} that writes compact binary records into a fixed-size memory-mapped file
+ * used as a ring buffer, so that the most recent records survive the process being killed or
+ * crashing. Opening a file written by an earlier process continues after its last record. The
+ * file is read back with {@link MappedLogDecoder}.
+ *
+ * <p>The file holds a header, a string table and the ring. Tags and call sites are interned
+ * into the string table, so that each record holds only its time, priority, tag and call site
+ * ids and its message bytes. Once the string table is full, new tags and call sites are
+ * written without an id.</p>
+ *
+ * <p>The default message format already holds the method, file and line of the call site, so
+ * a format of just {@link LogEx.Placeholder#MESSAGE} makes for smaller records.</p>
+ */
+public class MappedLogSink implements LogSink, Closeable {
+
+	public static final int DEFAULT_STRING_TABLE_SIZE = 32 * 1024;
+
+	public static final int DEFAULT_RING_SIZE = 256 * 1024;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	static final int MAGIC = 0x4c4f4758;
+	static final int VERSION = 1;
+
+	// Header layout
+	static final int HEADER_MAGIC = 0;
+	static final int HEADER_VERSION = 4;
+	static final int HEADER_STRING_TABLE_SIZE = 8;
+	static final int HEADER_RING_SIZE = 12;
+	static final int HEADER_STRING_COUNT = 16;
+	static final int HEADER_STRING_TABLE_USED = 20;
+	// The positions of the end of the newest record and the start of the oldest, counted in
+	// bytes written since the file was created.
+	static final int HEADER_HEAD = 24;
+	static final int HEADER_TAIL = 32;
+	static final int HEADER_SIZE = 64;
+
+	// Record layout. A negative size marks padding up to the end of the ring.
+	static final int RECORD_SIZE = 0;
+	static final int RECORD_MESSAGE_LENGTH = 4;
+	static final int RECORD_TIME = 8;
+	static final int RECORD_TAG_ID = 16;
+	static final int RECORD_SITE_ID = 18;
+	static final int RECORD_PRIORITY = 20;
+	static final int RECORD_HEADER_SIZE = 21;
+
+	static final int NO_ID = -1;
+
+	// Marks the strings in the string table that are tags, rather than call sites.
+	static final String TAG_PREFIX = "\u0000";
+
+	private static final int MAX_STRING_BYTES = 1024;
+	private static final int MAX_STRING_COUNT = Short.MAX_VALUE;
+
+	private final RandomAccessFile mFile;
+	private final MappedByteBuffer mBuffer;
+	private final int mStringTableSize;
+	private final int mRingOffset;
+	private final int mRingSize;
+	private final int mMaxMessageBytes;
+
+	private final HashMap<String, Integer> mTagIds = new HashMap<String, Integer>();
+	private final HashMap<StackTraceElement, Integer> mSiteIds =
+			new HashMap<StackTraceElement, Integer>();
+	// Call sites by their description, including those interned by earlier processes.
+	private final HashMap<String, Integer> mSiteNameIds = new HashMap<String, Integer>();
+	private int mStringCount;
+	private int mStringTableUsed;
+	private boolean mStringTableFull;
+
+	private long mHead;
+	private long mTail;
+
+	public MappedLogSink(File file) throws IOException {
+		this(file, DEFAULT_STRING_TABLE_SIZE, DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * Opens or creates the given file. A file with a different layout is cleared.
+	 * @param stringTableSize The number of bytes set aside for interned tags and call sites.
+	 * @param ringSize The number of bytes set aside for records, rounded down to a multiple
+	 *                 of four.
+	 */
+	public MappedLogSink(File file, int stringTableSize, int ringSize) throws IOException {
+		if (stringTableSize < 0) {
+			throw new IllegalArgumentException("stringTableSize must not be negative");
+		}
+		if (ringSize < 1024) {
+			throw new IllegalArgumentException("ringSize must be at least 1024");
+		}
+		mStringTableSize = stringTableSize;
+		mRingOffset = HEADER_SIZE + stringTableSize;
+		mRingSize = ringSize & ~3;
+		mMaxMessageBytes = mRingSize / 4 - RECORD_HEADER_SIZE;
+
+		mFile = new RandomAccessFile(file, "rw");
+		try {
+			final int length = mRingOffset + mRingSize;
+			mFile.setLength(length);
+			mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+		} catch (IOException e) {
+			mFile.close();
+			throw e;
+		}
+
+		if (!resume()) {
+			mBuffer.putInt(HEADER_MAGIC, 0);
+			mBuffer.putInt(HEADER_VERSION, VERSION);
+			mBuffer.putInt(HEADER_STRING_TABLE_SIZE, mStringTableSize);
+			mBuffer.putInt(HEADER_RING_SIZE, mRingSize);
+			mBuffer.putInt(HEADER_STRING_COUNT, 0);
+			mBuffer.putInt(HEADER_STRING_TABLE_USED, 0);
+			mBuffer.putLong(HEADER_HEAD, 0L);
+			mBuffer.putLong(HEADER_TAIL, 0L);
+			mBuffer.putInt(HEADER_MAGIC, MAGIC);
+		}
+	}
+
+	/**
+	 * Reloads the string table and ring positions written by an earlier process.
+	 * @return Whether the file held a valid header with the same layout.
+	 */
+	private boolean resume() {
+		if (!isValidHeader(mBuffer) ||
+				mBuffer.getInt(HEADER_STRING_TABLE_SIZE) != mStringTableSize ||
+				mBuffer.getInt(HEADER_RING_SIZE) != mRingSize) {
+			return false;
+		}
+		final String[] strings = readStrings(mBuffer);
+		if (strings == null) {
+			return false;
+		}
+		mStringCount = strings.length;
+		mStringTableUsed = mBuffer.getInt(HEADER_STRING_TABLE_USED);
+		mHead = mBuffer.getLong(HEADER_HEAD);
+		mTail = mBuffer.getLong(HEADER_TAIL);
+		for (int i = 0; i < strings.length; i++) {
+			if (strings[i].startsWith(TAG_PREFIX)) {
+				mTagIds.put(strings[i].substring(TAG_PREFIX.length()), i);
+			} else {
+				mSiteNameIds.put(strings[i], i);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the given buffer starts with a header whose sizes and positions are
+	 * consistent with each other and with the size of the buffer.
+	 */
+	static boolean isValidHeader(ByteBuffer buffer) {
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(HEADER_MAGIC) != MAGIC ||
+				buffer.getInt(HEADER_VERSION) != VERSION) {
+			return false;
+		}
+		final int stringTableSize = buffer.getInt(HEADER_STRING_TABLE_SIZE);
+		final int ringSize = buffer.getInt(HEADER_RING_SIZE);
+		final int stringCount = buffer.getInt(HEADER_STRING_COUNT);
+		final int stringTableUsed = buffer.getInt(HEADER_STRING_TABLE_USED);
+		final long head = buffer.getLong(HEADER_HEAD);
+		final long tail = buffer.getLong(HEADER_TAIL);
+		return stringTableSize >= 0 && ringSize > 0 && (ringSize & 3) == 0 &&
+				(long) HEADER_SIZE + stringTableSize + ringSize <= buffer.capacity() &&
+				stringCount >= 0 && stringTableUsed >= 0 && stringTableUsed <= stringTableSize &&
+				tail >= 0 && head >= tail && head - tail <= ringSize;
+	}
+
+	/**
+	 * Reads the string table of the given buffer, which must have a valid header.
+	 * @return The strings by id, or null if the string table is inconsistent with the header.
+	 */
+	static String[] readStrings(ByteBuffer buffer) {
+		final int count = buffer.getInt(HEADER_STRING_COUNT);
+		final int end = HEADER_SIZE + buffer.getInt(HEADER_STRING_TABLE_USED);
+		if (count > end - HEADER_SIZE) {
+			return null;
+		}
+		final String[] strings = new String[count];
+		int position = HEADER_SIZE;
+		for (int i = 0; i < count; i++) {
+			if (position + 2 > end) {
+				return null;
+			}
+			final int length = buffer.getShort(position);
+			if (length < 0 || position + 2 + length > end) {
+				return null;
+			}
+			final byte[] bytes = new byte[length];
+			for (int j = 0; j < length; j++) {
+				bytes[j] = buffer.get(position + 2 + j);
+			}
+			strings[i] = new String(bytes, UTF_8);
+			position += 2 + length;
+		}
+		return strings;
+	}
+
+	@Override
+	public synchronized void write(long timeMillis, int priority, String tag, String msg,
+	                               StackTraceElement frame) {
+		final int tagId = getTagId(tag);
+		final int siteId = getSiteId(frame);
+		byte[] bytes = (msg == null ? new byte[0] : msg.getBytes(UTF_8));
+		final int messageLength = getUtf8PrefixLength(bytes, mMaxMessageBytes);
+		final int size = (RECORD_HEADER_SIZE + messageLength + 3) & ~3;
+
+		int offset = (int) (mHead % mRingSize);
+		if (mRingSize - offset < size) {
+			// Records never wrap, so pad out the end of the ring.
+			final int padding = mRingSize - offset;
+			reclaim(mHead + padding);
+			mBuffer.putInt(mRingOffset + offset, -padding);
+			mHead += padding;
+			offset = 0;
+		}
+		reclaim(mHead + size);
+
+		final int position = mRingOffset + offset;
+		mBuffer.putInt(position + RECORD_SIZE, size);
+		mBuffer.putInt(position + RECORD_MESSAGE_LENGTH, messageLength);
+		mBuffer.putLong(position + RECORD_TIME, timeMillis);
+		mBuffer.putShort(position + RECORD_TAG_ID, (short) tagId);
+		mBuffer.putShort(position + RECORD_SITE_ID, (short) siteId);
+		mBuffer.put(position + RECORD_PRIORITY, (byte) priority);
+		for (int i = 0; i < messageLength; i++) {
+			mBuffer.put(position + RECORD_HEADER_SIZE + i, bytes[i]);
+		}
+
+		// Only publish the record once it has been written in full.
+		mHead += size;
+		mBuffer.putLong(HEADER_HEAD, mHead);
+	}
+
+	/**
+	 * Moves the tail past the oldest records until the ring has room up to the given head.
+	 */
+	private void reclaim(long head) {
+		if (head - mTail <= mRingSize) {
+			return;
+		}
+		do {
+			final int size = mBuffer.getInt(mRingOffset + (int) (mTail % mRingSize));
+			if (size == 0) {
+				// Not a record, so nothing older can be trusted either.
+				mTail = mHead;
+				break;
+			}
+			mTail += Math.abs(size);
+		} while (head - mTail > mRingSize);
+		mBuffer.putLong(HEADER_TAIL, mTail);
+	}
+
+	private int getTagId(String tag) {
+		if (tag == null) {
+			return NO_ID;
+		}
+		Integer id = mTagIds.get(tag);
+		if (id == null) {
+			id = intern(TAG_PREFIX + tag);
+			if (id != NO_ID) {
+				mTagIds.put(tag, id);
+			}
+		}
+		return id;
+	}
+
+	private int getSiteId(StackTraceElement frame) {
+		if (frame == null) {
+			return NO_ID;
+		}
+		Integer id = mSiteIds.get(frame);
+		if (id == null) {
+			final String name = frame.toString();
+			id = mSiteNameIds.get(name);
+			if (id == null) {
+				id = intern(name);
+				if (id == NO_ID) {
+					return NO_ID;
+				}
+				mSiteNameIds.put(name, id);
+			}
+			mSiteIds.put(frame, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Appends a string to the string table.
+	 * @return The id of the string, or {@link #NO_ID} if the string table is full.
+	 */
+	private int intern(String string) {
+		if (mStringTableFull) {
+			return NO_ID;
+		}
+		final byte[] bytes = string.getBytes(UTF_8);
+		final int length = getUtf8PrefixLength(bytes, MAX_STRING_BYTES);
+		if (mStringTableUsed + 2 + length > mStringTableSize ||
+				mStringCount >= MAX_STRING_COUNT) {
+			mStringTableFull = true;
+			return NO_ID;
+		}
+		final int position = HEADER_SIZE + mStringTableUsed;
+		mBuffer.putShort(position, (short) length);
+		for (int i = 0; i < length; i++) {
+			mBuffer.put(position + 2 + i, bytes[i]);
+		}
+		mStringTableUsed += 2 + length;
+		mBuffer.putInt(HEADER_STRING_TABLE_USED, mStringTableUsed);
+		// Only count the string once it has been written in full.
+		mBuffer.putInt(HEADER_STRING_COUNT, ++mStringCount);
+		return mStringCount - 1;
+	}
+
+	/**
+	 * Returns the length of the longest prefix of the given UTF-8 bytes that is at most
+	 * maxLength bytes long and does not end partway through a character.
+	 */
+	static int getUtf8PrefixLength(byte[] bytes, int maxLength) {
+		if (bytes.length <= maxLength) {
+			return bytes.length;
+		}
+		int length = maxLength;
+		// Back up over continuation bytes, which have the form 10xxxxxx.
+		while (length > 0 && (bytes[length] & 0xc0) == 0x80) {
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the mapped file out to storage. Records already survive the process dying
+	 * without this, but not the device losing power.
+	 */
+	public synchronized void force() {
+		mBuffer.force();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		mBuffer.force();
+		mFile.close();
+	}
+}
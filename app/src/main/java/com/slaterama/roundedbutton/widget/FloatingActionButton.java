@@ -1,5 +1,6 @@
 package com.slaterama.roundedbutton.widget;
 
+import android.animation.Animator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
@@ -11,21 +12,27 @@ import android.util.AttributeSet;
 import android.view.View;
 import android.widget.ImageButton;
 
+import com.slaterama.roundedbutton.LogEx;
 import com.slaterama.roundedbutton.R;
 
 public class FloatingActionButton extends ImageButton
 		implements RoundedButtonDelegate {
 
-	protected static RoundedButtonBackgroundImpl newRoundedButtonImpl(
+	private static final LogEx.Section SECTION_INITIALIZE =
+			LogEx.newSection("FloatingActionButton#initialize");
+
+	private static final LogEx.Section SECTION_MEASURE =
+			LogEx.newSection("FloatingActionButton#onMeasure");
+
+	/**
+	 * Creates the background using the named {@link RoundedButtonBackends backend}, or the
+	 * default backend if backend is null.
+	 */
+	protected static RoundedButtonBackgroundImpl newRoundedButtonImpl(String backend,
 			RoundedButtonDelegate delegate, ColorStateList color, float cornerRadius,
 			float elevation, float maxElevation, boolean useCompatPadding) {
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-			return new RoundedButtonBackgroundLollipop(delegate, color, cornerRadius, elevation,
-					maxElevation, useCompatPadding);
-		} else {
-			return new RoundedButtonBackgroundEclairMr1(delegate, color, cornerRadius, elevation,
-					maxElevation, useCompatPadding);
-		}
+		return RoundedButtonBackends.newBackground(backend, delegate, color, cornerRadius,
+				elevation, maxElevation, useCompatPadding);
 	}
 
 	protected boolean mPreventCornerOverlap;
@@ -36,6 +43,8 @@ public class FloatingActionButton extends ImageButton
 
 	protected RoundedButtonBackgroundImpl mImpl;
 
+	protected final RoundedButtonLayerHelper mLayerHelper = new RoundedButtonLayerHelper(this);
+
 	public FloatingActionButton(Context context) {
 		super(context, null);
 	}
@@ -58,38 +67,44 @@ public class FloatingActionButton extends ImageButton
 
 	protected void initialize(Context context, AttributeSet attrs, int defStyleAttr,
 	                          int defStyleRes) {
-		TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.FloatingActionButton,
-				defStyleAttr, defStyleRes);
-
-		ColorStateList color = a.getColorStateList(R.styleable.FloatingActionButton_fabColor);
-		// TODO resolve color?
-
-		float cornerRadius = a.getDimension(R.styleable.FloatingActionButton_fabCornerRadius,
-				getResources().getDimension(R.dimen.fab_default_corner_radius));
-		float elevation = a.getDimension(R.styleable.FloatingActionButton_fabElevation,
-				getResources().getDimension(R.dimen.fab_default_elevation));
-		float maxElevation = a.getDimension(R.styleable.FloatingActionButton_fabMaxElevation,
-				getResources().getDimension(R.dimen.fab_default_max_elevation));
-		boolean useCompatPadding = a.getBoolean(
-				R.styleable.FloatingActionButton_fabUseCompatPadding, false);
-		mPreventCornerOverlap = a.getBoolean(
-				R.styleable.FloatingActionButton_fabPreventCornerOverlap, true);
-
-		int defaultPadding = a.getDimensionPixelOffset(
-				R.styleable.FloatingActionButton_fabContentPadding, 0);
-		mContentPadding.left = a.getDimensionPixelOffset(
-				R.styleable.FloatingActionButton_fabContentPaddingLeft, defaultPadding);
-		mContentPadding.top = a.getDimensionPixelOffset(
-				R.styleable.FloatingActionButton_fabContentPaddingTop, defaultPadding);
-		mContentPadding.right = a.getDimensionPixelOffset(
-				R.styleable.FloatingActionButton_fabContentPaddingRight, defaultPadding);
-		mContentPadding.bottom = a.getDimensionPixelOffset(
-				R.styleable.FloatingActionButton_fabContentPaddingBottom, defaultPadding);
-
-		a.recycle();
-
-		mImpl = newRoundedButtonImpl(this, color, cornerRadius, elevation,
-				maxElevation, useCompatPadding);
+		final long start = LogEx.beginSection(SECTION_INITIALIZE);
+		try {
+			TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.FloatingActionButton,
+					defStyleAttr, defStyleRes);
+
+			ColorStateList color = a.getColorStateList(R.styleable.FloatingActionButton_fabColor);
+			// TODO resolve color?
+
+			float cornerRadius = a.getDimension(R.styleable.FloatingActionButton_fabCornerRadius,
+					getResources().getDimension(R.dimen.fab_default_corner_radius));
+			float elevation = a.getDimension(R.styleable.FloatingActionButton_fabElevation,
+					getResources().getDimension(R.dimen.fab_default_elevation));
+			float maxElevation = a.getDimension(R.styleable.FloatingActionButton_fabMaxElevation,
+					getResources().getDimension(R.dimen.fab_default_max_elevation));
+			boolean useCompatPadding = a.getBoolean(
+					R.styleable.FloatingActionButton_fabUseCompatPadding, false);
+			mPreventCornerOverlap = a.getBoolean(
+					R.styleable.FloatingActionButton_fabPreventCornerOverlap, true);
+			String backend = a.getString(R.styleable.FloatingActionButton_roundedBtnBackend);
+
+			int defaultPadding = a.getDimensionPixelOffset(
+					R.styleable.FloatingActionButton_fabContentPadding, 0);
+			mContentPadding.left = a.getDimensionPixelOffset(
+					R.styleable.FloatingActionButton_fabContentPaddingLeft, defaultPadding);
+			mContentPadding.top = a.getDimensionPixelOffset(
+					R.styleable.FloatingActionButton_fabContentPaddingTop, defaultPadding);
+			mContentPadding.right = a.getDimensionPixelOffset(
+					R.styleable.FloatingActionButton_fabContentPaddingRight, defaultPadding);
+			mContentPadding.bottom = a.getDimensionPixelOffset(
+					R.styleable.FloatingActionButton_fabContentPaddingBottom, defaultPadding);
+
+			a.recycle();
+
+			mImpl = newRoundedButtonImpl(backend, this, color, cornerRadius, elevation,
+					maxElevation, useCompatPadding);
+		} finally {
+			LogEx.endSection(SECTION_INITIALIZE, start);
+		}
 	}
 
 	@Override
@@ -113,6 +128,24 @@ public class FloatingActionButton extends ImageButton
 		updatePadding();
 	}
 
+	@Override
+	public void onBackgroundAnimationStart() {
+		mLayerHelper.onAnimationStart();
+	}
+
+	@Override
+	public void onBackgroundAnimationEnd() {
+		mLayerHelper.onAnimationEnd();
+	}
+
+	/**
+	 * @see RoundedButtonDelegate#onBackgroundAnimationStart()
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	public Animator.AnimatorListener getLayerAnimatorListener() {
+		return mLayerHelper.getAnimatorListener();
+	}
+
 	public void setColor(ColorStateList color) {
 		mImpl.setColor(color);
 	}
@@ -162,24 +195,29 @@ public class FloatingActionButton extends ImageButton
 
 	@Override
 	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-		super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-		int measuredWidthAndState = ViewCompat.getMeasuredWidthAndState(this);
-		int measuredHeightAndState = ViewCompat.getMeasuredHeightAndState(this);
-		// int measuredWidth = measuredWidthAndState & ViewCompat.MEASURED_SIZE_MASK;
-		int measuredWidthState = measuredWidthAndState & ViewCompat.MEASURED_STATE_MASK;
-		// int measuredHeight = measuredHeightAndState & ViewCompat.MEASURED_SIZE_MASK;
-		int measuredHeightState = measuredHeightAndState & ViewCompat.MEASURED_STATE_MASK;
-
-		float cornerRadius = mImpl.getCornerRadius();
-		int fabWidth = (int) (2 * cornerRadius) + mShadowPadding.left + mShadowPadding.right;
-		int fabHeight = (int) (2 * cornerRadius) + mShadowPadding.top + mShadowPadding.bottom;
-		int resolvedWidthSizeAndState = ViewCompat.resolveSizeAndState(fabWidth, widthMeasureSpec,
-				measuredWidthState);
-		int resolvedHeightSizeAndState = ViewCompat.resolveSizeAndState(fabHeight,
-				heightMeasureSpec, measuredHeightState);
-		int resolvedWidth = resolvedWidthSizeAndState & ViewCompat.MEASURED_SIZE_MASK;
-		int resolvedHeight = resolvedHeightSizeAndState & ViewCompat.MEASURED_SIZE_MASK;
-		setMeasuredDimension(resolvedWidth, resolvedHeight);
+		final long start = LogEx.beginSection(SECTION_MEASURE);
+		try {
+			super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+			int measuredWidthAndState = ViewCompat.getMeasuredWidthAndState(this);
+			int measuredHeightAndState = ViewCompat.getMeasuredHeightAndState(this);
+			// int measuredWidth = measuredWidthAndState & ViewCompat.MEASURED_SIZE_MASK;
+			int measuredWidthState = measuredWidthAndState & ViewCompat.MEASURED_STATE_MASK;
+			// int measuredHeight = measuredHeightAndState & ViewCompat.MEASURED_SIZE_MASK;
+			int measuredHeightState = measuredHeightAndState & ViewCompat.MEASURED_STATE_MASK;
+
+			float cornerRadius = mImpl.getCornerRadius();
+			int fabWidth = (int) (2 * cornerRadius) + mShadowPadding.left + mShadowPadding.right;
+			int fabHeight = (int) (2 * cornerRadius) + mShadowPadding.top + mShadowPadding.bottom;
+			int resolvedWidthSizeAndState = ViewCompat.resolveSizeAndState(fabWidth,
+					widthMeasureSpec, measuredWidthState);
+			int resolvedHeightSizeAndState = ViewCompat.resolveSizeAndState(fabHeight,
+					heightMeasureSpec, measuredHeightState);
+			int resolvedWidth = resolvedWidthSizeAndState & ViewCompat.MEASURED_SIZE_MASK;
+			int resolvedHeight = resolvedHeightSizeAndState & ViewCompat.MEASURED_SIZE_MASK;
+			setMeasuredDimension(resolvedWidth, resolvedHeight);
+		} finally {
+			LogEx.endSection(SECTION_MEASURE, start);
+		}
 	}
 
 	public void updatePadding() {
@@ -1,5 +1,6 @@
 package com.slaterama.roundedbutton.widget;
 
+import android.animation.Animator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
@@ -16,16 +17,15 @@ import com.slaterama.roundedbutton.R;
 public class RoundedButton extends Button
 		implements RoundedButtonDelegate {
 
-	protected static RoundedButtonBackgroundImpl newRoundedButtonImpl(
+	/**
+	 * Creates the background using the named {@link RoundedButtonBackends backend}, or the
+	 * default backend if backend is null.
+	 */
+	protected static RoundedButtonBackgroundImpl newRoundedButtonImpl(String backend,
 			RoundedButtonDelegate delegate, ColorStateList color, float cornerRadius,
 			float elevation, float maxElevation, boolean useCompatPadding) {
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-			return new RoundedButtonBackgroundLollipop(delegate, color, cornerRadius, elevation,
-					maxElevation, useCompatPadding);
-		} else {
-			return new RoundedButtonBackgroundEclairMr1(delegate, color, cornerRadius, elevation,
-					maxElevation, useCompatPadding);
-		}
+		return RoundedButtonBackends.newBackground(backend, delegate, color, cornerRadius,
+				elevation, maxElevation, useCompatPadding);
 	}
 
 	protected static void updateOverlapPadding(float cornerRadius, boolean preventCornerOverlap,
@@ -48,6 +48,8 @@ public class RoundedButton extends Button
 
 	protected RoundedButtonBackgroundImpl mImpl;
 
+	protected final RoundedButtonLayerHelper mLayerHelper = new RoundedButtonLayerHelper(this);
+
 	public RoundedButton(Context context) {
 		super(context, null);
 	}
@@ -86,6 +88,7 @@ public class RoundedButton extends Button
 				R.styleable.RoundedButton_roundedBtnUseCompatPadding, false);
 		mPreventCornerOverlap = a.getBoolean(
 				R.styleable.RoundedButton_roundedBtnPreventCornerOverlap, true);
+		String backend = a.getString(R.styleable.RoundedButton_roundedBtnBackend);
 		updateOverlapPadding(cornerRadius, mPreventCornerOverlap, mOverlapPadding);
 
 		int defaultPadding = a.getDimensionPixelOffset(
@@ -101,7 +104,7 @@ public class RoundedButton extends Button
 
 		a.recycle();
 
-		mImpl = newRoundedButtonImpl(this, color, cornerRadius, elevation,
+		mImpl = newRoundedButtonImpl(backend, this, color, cornerRadius, elevation,
 				maxElevation, useCompatPadding);
 	}
 
@@ -126,6 +129,24 @@ public class RoundedButton extends Button
 		updatePadding();
 	}
 
+	@Override
+	public void onBackgroundAnimationStart() {
+		mLayerHelper.onAnimationStart();
+	}
+
+	@Override
+	public void onBackgroundAnimationEnd() {
+		mLayerHelper.onAnimationEnd();
+	}
+
+	/**
+	 * @see RoundedButtonDelegate#onBackgroundAnimationStart()
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	public Animator.AnimatorListener getLayerAnimatorListener() {
+		return mLayerHelper.getAnimatorListener();
+	}
+
 	public void setColor(ColorStateList color) {
 		mImpl.setColor(color);
 	}
@@ -0,0 +1,147 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * A process-wide frame clock that drives the elevation animations of every
+ * {@link RoundedButtonBackgroundEclairMr1} from a single frame callback. Frames are timed by
+ * {@link Choreographer} on Jelly Bean and above and by a main thread {@link Handler} before
+ * that. The clock stops requesting frames as soon as no animation is running.
+ *
+ * <p>The clock must only be used from the main thread.</p>
+ */
+public final class RoundedButtonAnimationClock {
+
+	static final long FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+	interface AnimationFrameCallback {
+		/**
+		 * Called once per frame while the callback is registered.
+		 * @param frameTimeNanos The time at which the frame started, in the
+		 *                       {@link System#nanoTime()} time base.
+		 */
+		void doAnimationFrame(long frameTimeNanos);
+	}
+
+	interface FrameSchedulerImpl {
+		void postFrame();
+	}
+
+	static class BaseFrameSchedulerImpl implements FrameSchedulerImpl, Runnable {
+		private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+		@Override
+		public void postFrame() {
+			final long delayMillis = FRAME_INTERVAL_NANOS / 1000000L;
+			mHandler.postDelayed(this, delayMillis);
+		}
+
+		@Override
+		public void run() {
+			doFrame(System.nanoTime());
+		}
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	static class JellybeanFrameSchedulerImpl implements FrameSchedulerImpl,
+			Choreographer.FrameCallback {
+		@Override
+		public void postFrame() {
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			RoundedButtonAnimationClock.doFrame(frameTimeNanos);
+		}
+	}
+
+	private static final ArrayList<AnimationFrameCallback> sCallbacks =
+			new ArrayList<AnimationFrameCallback>();
+
+	private static FrameSchedulerImpl sImpl;
+
+	private static boolean sFrameScheduled;
+
+	private static long sLastFrameTimeNanos;
+
+	private static long sDroppedFrameCount;
+
+	private RoundedButtonAnimationClock() {
+	}
+
+	static void addCallback(AnimationFrameCallback callback) {
+		if (!sCallbacks.contains(callback)) {
+			sCallbacks.add(callback);
+		}
+		scheduleFrame();
+	}
+
+	static void removeCallback(AnimationFrameCallback callback) {
+		sCallbacks.remove(callback);
+	}
+
+	/**
+	 * Returns the number of animations currently driven by the clock.
+	 */
+	public static int getActiveAnimationCount() {
+		return sCallbacks.size();
+	}
+
+	/**
+	 * Returns the number of frames that were skipped between consecutive animation frames,
+	 * based on a 60 fps frame interval.
+	 */
+	public static long getDroppedFrameCount() {
+		return sDroppedFrameCount;
+	}
+
+	public static void resetDroppedFrameCount() {
+		sDroppedFrameCount = 0L;
+	}
+
+	private static void scheduleFrame() {
+		if (!sFrameScheduled) {
+			if (sImpl == null) {
+				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+					sImpl = new JellybeanFrameSchedulerImpl();
+				} else {
+					sImpl = new BaseFrameSchedulerImpl();
+				}
+			}
+			sFrameScheduled = true;
+			sImpl.postFrame();
+		}
+	}
+
+	static void doFrame(long frameTimeNanos) {
+		sFrameScheduled = false;
+		if (sLastFrameTimeNanos > 0L) {
+			long elapsed = frameTimeNanos - sLastFrameTimeNanos;
+			long frames = (elapsed + FRAME_INTERVAL_NANOS / 2) / FRAME_INTERVAL_NANOS;
+			if (frames > 1) {
+				sDroppedFrameCount += frames - 1;
+			}
+		}
+
+		// Callbacks may remove themselves as they finish, so walk the list backwards.
+		for (int i = sCallbacks.size() - 1; i >= 0; i--) {
+			if (i < sCallbacks.size()) {
+				sCallbacks.get(i).doAnimationFrame(frameTimeNanos);
+			}
+		}
+
+		if (sCallbacks.isEmpty()) {
+			sLastFrameTimeNanos = 0L;
+		} else {
+			sLastFrameTimeNanos = frameTimeNanos;
+			scheduleFrame();
+		}
+	}
+}
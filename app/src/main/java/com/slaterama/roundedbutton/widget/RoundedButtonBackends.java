@@ -0,0 +1,253 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.res.ColorStateList;
+import android.os.Build;
+import android.support.v4.app.ActivityManagerCompat;
+import android.view.View;
+
+import java.util.HashMap;
+
+/**
+ * A registry of the backgrounds, or backends, that rounded buttons can be drawn with. A button
+ * uses the backend named by its {@code roundedBtnBackend} attribute, which may be set on
+ * the button, in its style or in the theme, and otherwise the
+ * {@link #setDefaultBackend(String) default backend}. Apps may register their own backends
+ * alongside the built-in ones.
+ *
+ * <p>The registry must only be used from the main thread.</p>
+ */
+public final class RoundedButtonBackends {
+
+	/**
+	 * Creates the background for a rounded button.
+	 */
+	public interface Factory {
+		RoundedButtonBackgroundImpl newBackground(RoundedButtonDelegate delegate,
+		                                          ColorStateList color, float cornerRadius,
+		                                          float elevation, float maxElevation,
+		                                          boolean useCompatPadding);
+	}
+
+	/**
+	 * Native elevation on Lollipop and above, and {@link #COMPAT} before that.
+	 */
+	public static final String NATIVE = "native";
+
+	/**
+	 * A drawn compat shadow.
+	 * @see RoundedButtonBackgroundEclairMr1
+	 */
+	public static final String COMPAT = "compat";
+
+	/**
+	 * A drawn compat shadow, drawn as a single vertex mesh.
+	 * @see RoundedButtonBackgroundMesh
+	 */
+	public static final String COMPAT_MESH = "compat_mesh";
+
+	/**
+	 * A drawn compat shadow that is rendered into a cached bitmap while it is not animating.
+	 * @see RoundedButtonBackgroundEclairMr1#setUseLayerCache(boolean)
+	 */
+	public static final String COMPAT_CACHED = "compat_cached";
+
+	/**
+	 * A fill without any shadow.
+	 * @see RoundedButtonBackgroundFlat
+	 */
+	public static final String FLAT = "flat";
+
+	/**
+	 * Chooses a backend for the device: {@link #NATIVE} on Lollipop and above, {@link #FLAT}
+	 * on low RAM devices and devices with a small memory class, {@link #COMPAT_CACHED} when
+	 * the button is not hardware accelerated and {@link #COMPAT} otherwise. Opt in by naming
+	 * it on a button or in the theme, or with {@link #setDefaultBackend(String)}.
+	 */
+	public static final String AUTO = "auto";
+
+	// Devices with a memory class at or below this many megabytes get the flat backend in auto.
+	static final int LOW_MEMORY_CLASS = 24;
+
+	private static final HashMap<String, Factory> sFactories = new HashMap<String, Factory>();
+
+	private static String sDefaultBackend = NATIVE;
+
+	static {
+		register(NATIVE, new Factory() {
+			@Override
+			public RoundedButtonBackgroundImpl newBackground(RoundedButtonDelegate delegate,
+			                                                 ColorStateList color,
+			                                                 float cornerRadius,
+			                                                 float elevation,
+			                                                 float maxElevation,
+			                                                 boolean useCompatPadding) {
+				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+					return new RoundedButtonBackgroundLollipop(delegate, color, cornerRadius,
+							elevation, maxElevation, useCompatPadding);
+				}
+				return new RoundedButtonBackgroundEclairMr1(delegate, color, cornerRadius,
+						elevation, maxElevation, useCompatPadding);
+			}
+		});
+		register(COMPAT, new Factory() {
+			@Override
+			public RoundedButtonBackgroundImpl newBackground(RoundedButtonDelegate delegate,
+			                                                 ColorStateList color,
+			                                                 float cornerRadius,
+			                                                 float elevation,
+			                                                 float maxElevation,
+			                                                 boolean useCompatPadding) {
+				return new RoundedButtonBackgroundEclairMr1(delegate, color, cornerRadius,
+						elevation, maxElevation, useCompatPadding);
+			}
+		});
+		register(COMPAT_MESH, new Factory() {
+			@Override
+			public RoundedButtonBackgroundImpl newBackground(RoundedButtonDelegate delegate,
+			                                                 ColorStateList color,
+			                                                 float cornerRadius,
+			                                                 float elevation,
+			                                                 float maxElevation,
+			                                                 boolean useCompatPadding) {
+				return new RoundedButtonBackgroundMesh(delegate, color, cornerRadius,
+						elevation, maxElevation, useCompatPadding);
+			}
+		});
+		register(COMPAT_CACHED, new Factory() {
+			@Override
+			public RoundedButtonBackgroundImpl newBackground(RoundedButtonDelegate delegate,
+			                                                 ColorStateList color,
+			                                                 float cornerRadius,
+			                                                 float elevation,
+			                                                 float maxElevation,
+			                                                 boolean useCompatPadding) {
+				RoundedButtonBackgroundEclairMr1 background =
+						new RoundedButtonBackgroundEclairMr1(delegate, color, cornerRadius,
+								elevation, maxElevation, useCompatPadding);
+				background.setUseLayerCache(true);
+				return background;
+			}
+		});
+		register(FLAT, new Factory() {
+			@Override
+			public RoundedButtonBackgroundImpl newBackground(RoundedButtonDelegate delegate,
+			                                                 ColorStateList color,
+			                                                 float cornerRadius,
+			                                                 float elevation,
+			                                                 float maxElevation,
+			                                                 boolean useCompatPadding) {
+				return new RoundedButtonBackgroundFlat(delegate, color, cornerRadius,
+						elevation, maxElevation, useCompatPadding);
+			}
+		});
+		register(AUTO, new Factory() {
+			@Override
+			public RoundedButtonBackgroundImpl newBackground(RoundedButtonDelegate delegate,
+			                                                 ColorStateList color,
+			                                                 float cornerRadius,
+			                                                 float elevation,
+			                                                 float maxElevation,
+			                                                 boolean useCompatPadding) {
+				return getFactory(chooseBackend(delegate.getView())).newBackground(delegate,
+						color, cornerRadius, elevation, maxElevation, useCompatPadding);
+			}
+		});
+	}
+
+	private RoundedButtonBackends() {
+	}
+
+	/**
+	 * Registers a backend, replacing any backend already registered under the same name.
+	 */
+	public static void register(String name, Factory factory) {
+		if (name == null || factory == null) {
+			throw new IllegalArgumentException("name and factory must not be null");
+		}
+		sFactories.put(name, factory);
+	}
+
+	public static void unregister(String name) {
+		sFactories.remove(name);
+	}
+
+	public static boolean isRegistered(String name) {
+		return sFactories.containsKey(name);
+	}
+
+	/**
+	 * Returns the factory registered under the given name.
+	 * @throws IllegalArgumentException If no backend is registered under that name.
+	 */
+	public static Factory getFactory(String name) {
+		Factory factory = sFactories.get(name);
+		if (factory == null) {
+			throw new IllegalArgumentException("No rounded button backend named " + name);
+		}
+		return factory;
+	}
+
+	/**
+	 * Sets the backend used by buttons that do not name one. The default is {@link #NATIVE}.
+	 */
+	public static void setDefaultBackend(String name) {
+		getFactory(name);
+		sDefaultBackend = name;
+	}
+
+	public static String getDefaultBackend() {
+		return sDefaultBackend;
+	}
+
+	/**
+	 * Creates a background using the named backend, or the default backend if name is null.
+	 */
+	public static RoundedButtonBackgroundImpl newBackground(String name,
+	                                                        RoundedButtonDelegate delegate,
+	                                                        ColorStateList color,
+	                                                        float cornerRadius, float elevation,
+	                                                        float maxElevation,
+	                                                        boolean useCompatPadding) {
+		return getFactory(name == null ? sDefaultBackend : name).newBackground(delegate, color,
+				cornerRadius, elevation, maxElevation, useCompatPadding);
+	}
+
+	/**
+	 * Returns the backend that {@link #AUTO} chooses for the given view.
+	 */
+	public static String chooseBackend(View view) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			return NATIVE;
+		}
+		ActivityManager activityManager = (ActivityManager) view.getContext()
+				.getSystemService(Context.ACTIVITY_SERVICE);
+		if (activityManager != null &&
+				(ActivityManagerCompat.isLowRamDevice(activityManager) ||
+						activityManager.getMemoryClass() <= LOW_MEMORY_CLASS)) {
+			return FLAT;
+		}
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB ||
+				!isHardwareAccelerated(view)) {
+			return COMPAT_CACHED;
+		}
+		return COMPAT;
+	}
+
+	/**
+	 * Returns whether the view is, or once attached will be, hardware accelerated. Buttons are
+	 * usually created before they are attached to a window, so this falls back to the
+	 * application's hardwareAccelerated flag.
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static boolean isHardwareAccelerated(View view) {
+		if (view.isHardwareAccelerated()) {
+			return true;
+		}
+		ApplicationInfo info = view.getContext().getApplicationInfo();
+		return info != null && (info.flags & ApplicationInfo.FLAG_HARDWARE_ACCELERATED) != 0;
+	}
+}
@@ -3,16 +3,15 @@ package com.slaterama.roundedbutton.widget;
 import android.annotation.TargetApi;
 import android.content.res.ColorStateList;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PixelFormat;
-import android.graphics.RadialGradient;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.StateSet;
@@ -20,6 +19,7 @@ import android.view.View;
 import android.view.animation.DecelerateInterpolator;
 
 import com.slaterama.roundedbutton.GraphicsCompat;
+import com.slaterama.roundedbutton.LogEx;
 import com.slaterama.roundedbutton.R;
 import com.slaterama.roundedbutton.ViewCompatEx;
 
@@ -29,6 +29,48 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 
 	protected final static DecelerateInterpolator INTERPOLATOR = new DecelerateInterpolator(3.0f);
 
+	// Dirty flags for the components that draw() rebuilds lazily
+	static final int DIRTY_BOUNDS = 1;
+	static final int DIRTY_SHADOW = 1 << 1;
+	static final int DIRTY_COLOR = 1 << 2;
+	static final int DIRTY_ALL = DIRTY_BOUNDS | DIRTY_SHADOW | DIRTY_COLOR;
+
+	// The number of pre-built shadows spanning elevation to max elevation when keyframes are used.
+	static final int SHADOW_KEYFRAME_COUNT = 8;
+
+	private static final LogEx.Section SECTION_DRAW =
+			LogEx.newSection("RoundedButtonBackgroundEclairMr1#draw");
+
+	private static boolean sDefaultUseShadowKeyframes = false;
+
+	/**
+	 * Sets whether newly created backgrounds pre-build a table of shadow keyframes spanning
+	 * their elevation range. When enabled, the press animation draws the nearest keyframe
+	 * each frame, stretched to the animated elevation, instead of building new shadow
+	 * components.
+	 */
+	public static void setDefaultUseShadowKeyframes(boolean useShadowKeyframes) {
+		sDefaultUseShadowKeyframes = useShadowKeyframes;
+	}
+
+	public static boolean isDefaultUseShadowKeyframes() {
+		return sDefaultUseShadowKeyframes;
+	}
+
+	private static boolean sDefaultUseLayerCache = false;
+
+	/**
+	 * Sets whether newly created backgrounds render their shadow and fill into a cached
+	 * bitmap while they are not animating.
+	 */
+	public static void setDefaultUseLayerCache(boolean useLayerCache) {
+		sDefaultUseLayerCache = useLayerCache;
+	}
+
+	public static boolean isDefaultUseLayerCache() {
+		return sDefaultUseLayerCache;
+	}
+
 	protected RoundedButtonDelegate mDelegate;
 	protected ColorStateList mColor;
 	protected float mCornerRadius;
@@ -44,19 +86,81 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 
 	final RectF mButtonBounds;
 	Path mCornerShadowPath;
-
-	private final int mShadowStartColor;
-	private final int mShadowEndColor;
+	// The elevation that mCornerShadowPath and the shadow shaders were built for. Between
+	// keyframes this differs from mVisualElevation, and the shadow is stretched when drawn.
+	float mShadowElevation;
+
+	private boolean mUseShadowKeyframes;
+	private boolean mShadowKeyframesValid;
+	private final RoundedButtonShadowCache.Shadow[] mShadowKeyframes;
+	private final float[] mShadowKeyframeElevations;
+
+	private boolean mUseLayerCache;
+	private boolean mLayerCacheValid;
+	private Bitmap mLayerBitmap;
+	private Canvas mLayerCanvas;
+
+	private boolean mOverdrawDebugEnabled;
+	private RoundedButtonOverdrawCanvas mOverdrawCanvas;
+	private int mOverdrawPixelCount;
+
+	final int mShadowStartColor;
+	final int mShadowEndColor;
 	final float mInsetShadowExtra;
 
-	private boolean mDirty = true;
+	private int mDirtyFlags = DIRTY_ALL;
+
+	private final RectF mInvalidRectF = new RectF();
+	private final RectF mShadowBoundsF = new RectF();
+	private final Rect mInvalidRect = new Rect();
+	// The regions invalidated by the most recent invalidateShadow() or invalidateFill(), used
+	// to verify their size in tests
+	final Rect[] mLastInvalidatedRects = {new Rect(), new Rect(), new Rect(), new Rect()};
+	int mLastInvalidatedRectCount;
+
+	// Per-component rebuild counts, used to verify that components are only rebuilt when needed
+	int mBoundsRebuildCount;
+	int mShadowRebuildCount;
+	int mColorRebuildCount;
+	// The number of layer cache bitmaps allocated, used to verify that they are reused
+	int mLayerBitmapAllocationCount;
 
 	private boolean mPressed = false;
+	private boolean mAnimating;
+	// The frame time of the first animation frame, or 0 if that frame has not arrived yet
 	private long mAnimStartTime;
 	private float mAnimFromElevation;
 	private float mAnimToElevation;
 	private long mAnimDuration;
 
+	private final RoundedButtonAnimationClock.AnimationFrameCallback mAnimationFrameCallback =
+			new RoundedButtonAnimationClock.AnimationFrameCallback() {
+				@Override
+				public void doAnimationFrame(long frameTimeNanos) {
+					if (mAnimStartTime == 0L) {
+						mAnimStartTime = frameTimeNanos;
+					}
+					final float fromElevation = mVisualElevation;
+					long elapsedDuration = (frameTimeNanos - mAnimStartTime) / 1000000L;
+					if (elapsedDuration >= mAnimDuration) {
+						mVisualElevation = mAnimToElevation;
+						stopShadowAnimation();
+					} else {
+						float interpolatedTime = INTERPOLATOR.getInterpolation(elapsedDuration /
+								(float) mAnimDuration);
+						mVisualElevation = mAnimFromElevation +
+								(mAnimToElevation - mAnimFromElevation) * interpolatedTime;
+					}
+					// With keyframes, most frames reuse the current keyframe's shadow.
+					if (getTargetShadowElevation() != mShadowElevation) {
+						mDirtyFlags |= DIRTY_SHADOW;
+					}
+					if (mVisualElevation != fromElevation) {
+						invalidateShadow(fromElevation, mVisualElevation);
+					}
+				}
+			};
+
 	@SuppressWarnings("unused")
 	public RoundedButtonBackgroundEclairMr1(RoundedButtonDelegate delegate, ColorStateList color,
 	                                        float cornerRadius, float elevation,
@@ -90,6 +194,15 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 
 		mButtonBounds = new RectF();
 
+		mShadowKeyframes = new RoundedButtonShadowCache.Shadow[SHADOW_KEYFRAME_COUNT];
+		mShadowKeyframeElevations = new float[SHADOW_KEYFRAME_COUNT];
+		mUseShadowKeyframes = sDefaultUseShadowKeyframes;
+		if (mUseShadowKeyframes) {
+			buildShadowKeyframes();
+		}
+
+		mUseLayerCache = sDefaultUseLayerCache;
+
 		ViewCompatEx.setBackground(view, this);
 
 		invalidatePadding();
@@ -100,6 +213,7 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 		mPaint.setAlpha(alpha);
 		mCornerShadowPaint.setAlpha(alpha);
 		mEdgeShadowPaint.setAlpha(alpha);
+		mLayerCacheValid = false;
 	}
 
 	@Override
@@ -107,11 +221,13 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 		mPaint.setColorFilter(cf);
 		mCornerShadowPaint.setColorFilter(cf);
 		mEdgeShadowPaint.setColorFilter(cf);
+		mLayerCacheValid = false;
 	}
 
 	@Override
 	public int getOpacity() {
-		return PixelFormat.OPAQUE;
+		// The shadow is always translucent, and the rounded corners are transparent.
+		return PixelFormat.TRANSLUCENT;
 	}
 
 	@Override
@@ -122,7 +238,7 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 	@Override
 	protected void onBoundsChange(Rect bounds) {
 		super.onBoundsChange(bounds);
-		mDirty = true;
+		mDirtyFlags |= DIRTY_BOUNDS;
 	}
 
 	@Override
@@ -141,42 +257,178 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 			return super.onStateChange(stateSet) || animate;
 		} else {
 			mPaint.setColor(color);
-			invalidateSelf();
+			mLayerCacheValid = false;
+			invalidateFill();
 			return true;
 		}
 	}
 
 	@Override
 	public void draw(Canvas canvas) {
-		if (mDirty) {
-			mDirty = false;
-			buildComponents(getBounds());
+		final long start = LogEx.beginSection(SECTION_DRAW);
+		try {
+			if ((mDirtyFlags & DIRTY_BOUNDS) != 0) {
+				buildButtonBounds(getBounds());
+			}
+			if ((mDirtyFlags & DIRTY_SHADOW) != 0) {
+				buildShadowCorners();
+			}
+			if ((mDirtyFlags & DIRTY_COLOR) != 0) {
+				buildColor();
+			}
+			if (mDirtyFlags != 0) {
+				mDirtyFlags = 0;
+				mLayerCacheValid = false;
+			}
+
+			if (!mUseLayerCache || mAnimating || !drawLayerCache(canvas)) {
+				drawComponents(canvas);
+			}
+
+			if (mOverdrawDebugEnabled) {
+				measureOverdraw();
+			}
+		} finally {
+			LogEx.endSection(SECTION_DRAW, start);
 		}
+	}
+
+	private void drawComponents(Canvas canvas) {
+		final boolean circular = isCircular();
+		final int saved = canvas.save();
 		canvas.translate(0, mVisualElevation / 2);
-		drawShadow(canvas);
-		canvas.translate(0, -mVisualElevation / 2);
-		GraphicsCompat.drawRoundRect(canvas, mButtonBounds, mCornerRadius, mCornerRadius, mPaint);
-
-		if (mAnimStartTime > 0L) {
-			long elapsedDuration = System.currentTimeMillis() - mAnimStartTime;
-			if (elapsedDuration > mAnimDuration) {
-				mAnimStartTime = 0L;
-				mVisualElevation = mAnimToElevation;
-			} else {
-				float interpolatedTime = INTERPOLATOR.getInterpolation(elapsedDuration /
-						(float) mAnimDuration);
-				mVisualElevation = mAnimFromElevation +
-						(mAnimToElevation - mAnimFromElevation) * interpolatedTime;
+		if (mVisualElevation != mShadowElevation) {
+			// Between keyframes, stretch the keyframe's shadow about the button center so that
+			// its outer edge is where the visual elevation puts it.
+			final float halfWidth = mButtonBounds.width() / 2;
+			final float halfHeight = mButtonBounds.height() / 2;
+			canvas.scale((halfWidth + mVisualElevation) / (halfWidth + mShadowElevation),
+					(halfHeight + mVisualElevation) / (halfHeight + mShadowElevation),
+					mButtonBounds.centerX(), mButtonBounds.centerY());
+		}
+		if (circular) {
+			drawCircularShadow(canvas);
+		} else {
+			drawShadow(canvas);
+		}
+		canvas.restoreToCount(saved);
+
+		if (circular) {
+			canvas.drawCircle(mButtonBounds.centerX(), mButtonBounds.centerY(),
+					Math.min(mButtonBounds.width(), mButtonBounds.height()) / 2, mPaint);
+		} else {
+			GraphicsCompat.drawRoundRect(canvas, mButtonBounds, mCornerRadius, mCornerRadius,
+					mPaint);
+		}
+	}
+
+	/**
+	 * Returns whether the button is a circle, as a FloatingActionButton almost always is.
+	 */
+	protected boolean isCircular() {
+		final float width = mButtonBounds.width();
+		final float height = mButtonBounds.height();
+		// Measured sizes are truncated, so allow for up to a pixel of rounding.
+		return Math.abs(width - height) <= 1.0f &&
+				Math.abs(2 * mCornerRadius - Math.min(width, height)) <= 1.0f;
+	}
+
+	/**
+	 * Draws the shadow of a circular button as a single circle. The canvas is already offset
+	 * by the elevation.
+	 */
+	private void drawCircularShadow(Canvas canvas) {
+		final float shadowOffset = mShadowElevation / 2;
+		final float outerRadius = mCornerRadius + mShadowElevation;
+
+		// The corner shader is a radial gradient around the corner origin that reaches the
+		// outer radius of the shadow, so centered on the button it shades the whole shadow.
+		canvas.translate(mButtonBounds.centerX(), mButtonBounds.centerY());
+		if (isShadowCenterHidden()) {
+			// Only stroke the ring that is not covered by the fill.
+			final float innerRadius =
+					Math.max(mCornerRadius - shadowOffset - mInsetShadowExtra, 0.0f);
+			mCornerShadowPaint.setStyle(Paint.Style.STROKE);
+			mCornerShadowPaint.setStrokeWidth(outerRadius - innerRadius);
+			canvas.drawCircle(0, 0, (outerRadius + innerRadius) / 2, mCornerShadowPaint);
+			mCornerShadowPaint.setStyle(Paint.Style.FILL);
+		} else {
+			canvas.drawCircle(0, 0, outerRadius, mCornerShadowPaint);
+		}
+	}
+
+	/**
+	 * Draws the background from the layer cache, re-rendering the cache first if it is out of
+	 * date.
+	 * @return Whether the background was drawn. Returns false if a cache bitmap could not be
+	 * allocated.
+	 */
+	private boolean drawLayerCache(Canvas canvas) {
+		final Rect bounds = getBounds();
+		final int width = bounds.width();
+		final int height = bounds.height();
+		if (width <= 0 || height <= 0) {
+			return false;
+		}
+
+		if (mLayerBitmap == null || mLayerBitmap.getWidth() != width ||
+				mLayerBitmap.getHeight() != height) {
+			releaseLayerCache();
+			try {
+				mLayerBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+				mLayerBitmapAllocationCount++;
+			} catch (OutOfMemoryError e) {
+				return false;
 			}
-			mDirty = true;
-			invalidateSelf();
+			if (mLayerCanvas == null) {
+				mLayerCanvas = new Canvas();
+			}
+			mLayerCanvas.setBitmap(mLayerBitmap);
+		}
+
+		if (!mLayerCacheValid) {
+			mLayerBitmap.eraseColor(Color.TRANSPARENT);
+			int saved = mLayerCanvas.save();
+			mLayerCanvas.translate(-bounds.left, -bounds.top);
+			drawComponents(mLayerCanvas);
+			mLayerCanvas.restoreToCount(saved);
+			mLayerCacheValid = true;
+		}
+
+		canvas.drawBitmap(mLayerBitmap, bounds.left, bounds.top, null);
+		return true;
+	}
+
+	private void measureOverdraw() {
+		final Rect bounds = getBounds();
+		if (bounds.isEmpty()) {
+			mOverdrawPixelCount = 0;
+			return;
 		}
+		if (mOverdrawCanvas == null) {
+			mOverdrawCanvas = new RoundedButtonOverdrawCanvas();
+		}
+		mOverdrawCanvas.begin(bounds.width(), bounds.height());
+		int saved = mOverdrawCanvas.save();
+		mOverdrawCanvas.translate(-bounds.left, -bounds.top);
+		drawComponents(mOverdrawCanvas);
+		mOverdrawCanvas.restoreToCount(saved);
+		mOverdrawPixelCount = mOverdrawCanvas.countOverdrawnPixels();
+	}
+
+	private void releaseLayerCache() {
+		if (mLayerBitmap != null) {
+			mLayerBitmap.recycle();
+			mLayerBitmap = null;
+		}
+		mLayerCacheValid = false;
 	}
 
 	@Override
 	public void setColor(ColorStateList color) {
 		mColor = color;
-		invalidateSelf();
+		mDirtyFlags |= DIRTY_COLOR;
+		invalidateFill();
 	}
 
 	@Override
@@ -188,7 +440,8 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 	public void setCornerRadius(float cornerRadius) {
 		if (cornerRadius != mCornerRadius) {
 			mCornerRadius = cornerRadius;
-			mDirty = true;
+			mShadowKeyframesValid = false;
+			mDirtyFlags |= DIRTY_SHADOW;
 			invalidateSelf();
 			mDelegate.getView().requestLayout();
 		}
@@ -204,8 +457,9 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 		if (elevation != mElevation) {
 			mElevation = elevation;
 			mVisualElevation = elevation;
-			mAnimStartTime = 0L;
-			mDirty = true;
+			stopShadowAnimation();
+			mShadowKeyframesValid = false;
+			mDirtyFlags |= DIRTY_SHADOW;
 			invalidateSelf();
 		}
 	}
@@ -219,10 +473,104 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 	public void setMaxElevation(float maxElevation) {
 		if (maxElevation != mMaxElevation) {
 			mMaxElevation = maxElevation;
+			mShadowKeyframesValid = false;
+			// The button is inset by the max elevation, so its bounds change with it.
+			mDirtyFlags |= DIRTY_BOUNDS;
 			invalidatePadding();
 		}
 	}
 
+	public boolean isUseShadowKeyframes() {
+		return mUseShadowKeyframes;
+	}
+
+	public void setUseShadowKeyframes(boolean useShadowKeyframes) {
+		if (useShadowKeyframes != mUseShadowKeyframes) {
+			mUseShadowKeyframes = useShadowKeyframes;
+			mShadowKeyframesValid = false;
+			if (!useShadowKeyframes) {
+				for (int i = 0; i < SHADOW_KEYFRAME_COUNT; i++) {
+					mShadowKeyframes[i] = null;
+				}
+			}
+		}
+	}
+
+	public boolean isUseLayerCache() {
+		return mUseLayerCache;
+	}
+
+	/**
+	 * Sets whether this background renders its shadow and fill into a cached bitmap once and
+	 * draws that bitmap while it is not animating. The cache is re-rendered whenever the
+	 * bounds, color, corner radius or elevation change, and is bypassed while the shadow
+	 * animates.
+	 */
+	public void setUseLayerCache(boolean useLayerCache) {
+		if (useLayerCache != mUseLayerCache) {
+			mUseLayerCache = useLayerCache;
+			if (!useLayerCache) {
+				releaseLayerCache();
+			}
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes used by this background's layer cache bitmap, or 0 if it
+	 * does not currently hold one.
+	 */
+	public int getLayerCacheByteCount() {
+		return (mLayerBitmap == null ? 0 : mLayerBitmap.getRowBytes() * mLayerBitmap.getHeight());
+	}
+
+	public boolean isOverdrawDebugEnabled() {
+		return mOverdrawDebugEnabled;
+	}
+
+	/**
+	 * Debugging aid that, when enabled, redraws every frame onto an offscreen software canvas
+	 * and counts the pixels that were drawn more than once. This is expensive and should not
+	 * be left enabled in production.
+	 * @see #getOverdrawPixelCount()
+	 */
+	public void setOverdrawDebugEnabled(boolean overdrawDebugEnabled) {
+		if (overdrawDebugEnabled != mOverdrawDebugEnabled) {
+			mOverdrawDebugEnabled = overdrawDebugEnabled;
+			mOverdrawPixelCount = 0;
+			if (!overdrawDebugEnabled && mOverdrawCanvas != null) {
+				mOverdrawCanvas.release();
+				mOverdrawCanvas = null;
+			}
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * Returns the number of pixels that were drawn more than once in the most recent frame,
+	 * or 0 if overdraw debugging is not enabled.
+	 */
+	public int getOverdrawPixelCount() {
+		return mOverdrawPixelCount;
+	}
+
+	/**
+	 * Returns whether the button fill is fully opaque, meaning anything drawn underneath it is
+	 * hidden.
+	 */
+	protected boolean isFillOpaque() {
+		return Color.alpha(mPaint.getColor()) == 255 && mPaint.getAlpha() == 255 &&
+				mPaint.getColorFilter() == null;
+	}
+
+	/**
+	 * Returns whether the solid area under the center of the button, which the shadow is
+	 * offset downward from, is entirely hidden by the button fill.
+	 */
+	protected boolean isShadowCenterHidden() {
+		return isFillOpaque() && mShadowElevation / 2 <= mCornerRadius;
+	}
+
 	@Override
 	public boolean isUseCompatPadding() {
 		return true;
@@ -233,9 +581,9 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 		// NO OP
 	}
 
-	private void drawShadow(Canvas canvas) {
-		float insetShadow = mVisualElevation / 2 + mInsetShadowExtra;
-		final float edgeShadowTop = -mCornerRadius - mVisualElevation;
+	protected void drawShadow(Canvas canvas) {
+		float insetShadow = mShadowElevation / 2 + mInsetShadowExtra;
+		final float edgeShadowTop = -mCornerRadius - mShadowElevation;
 		final float edgeShadowBottom = Math.min(-mCornerRadius + insetShadow, 0.0f);
 		float inset = mCornerRadius;
 		final boolean drawHorizontalEdges = mButtonBounds.width() > 2 * mCornerRadius;
@@ -284,8 +632,8 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 					mEdgeShadowPaint);
 		}
 		canvas.restoreToCount(saved);
-		// Center
-		if (drawHorizontalEdges && drawVerticalEdges) {
+		// Center, unless the button fill will cover it anyway
+		if (drawHorizontalEdges && drawVerticalEdges && !isShadowCenterHidden()) {
 			saved = canvas.save();
 			canvas.translate(mButtonBounds.left + inset, mButtonBounds.top + inset);
 			canvas.drawRect(0, 0,
@@ -296,55 +644,163 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 	}
 
 	private void buildShadowCorners() {
+		mShadowRebuildCount++;
 		if (mVisualElevation == mMaxElevation) {
 //			LogEx.d();
 		}
 
-		float insetShadow = mVisualElevation / 2 + mInsetShadowExtra;
-		float innerRadius = Math.max(mCornerRadius - insetShadow, 0.0f);
-		float outerRadius = mCornerRadius + mVisualElevation;
-		RectF innerBounds = new RectF(-innerRadius, -innerRadius, innerRadius, innerRadius);
-		RectF outerBounds = new RectF(-outerRadius, -outerRadius, outerRadius, outerRadius);
+		final RoundedButtonShadowCache.Shadow shadow;
+		if (isUsingShadowKeyframes()) {
+			int index = getNearestShadowKeyframe(mVisualElevation);
+			shadow = mShadowKeyframes[index];
+			mShadowElevation = mShadowKeyframeElevations[index];
+		} else if (mAnimating) {
+			// Intermediate animation frames are rarely repeated, so build them directly
+			// rather than pushing resting shadows out of the shared cache.
+			shadow = RoundedButtonShadowCache.build(mCornerRadius, mVisualElevation,
+					mInsetShadowExtra, mShadowStartColor, mShadowEndColor);
+			mShadowElevation = mVisualElevation;
+		} else {
+			shadow = RoundedButtonShadowCache.obtain(mCornerRadius, mVisualElevation,
+					mInsetShadowExtra, mShadowStartColor, mShadowEndColor);
+			mShadowElevation = mVisualElevation;
+		}
+		mCornerShadowPath = shadow.cornerPath;
+		mCornerShadowPaint.setShader(shadow.cornerShader);
+		mEdgeShadowPaint.setShader(shadow.edgeShader);
+	}
+
+	private void buildShadowKeyframes() {
+		final float range = mMaxElevation - mElevation;
+		for (int i = 0; i < SHADOW_KEYFRAME_COUNT; i++) {
+			// Pin the last keyframe so that the resting shadows match the cached ones exactly.
+			float elevation = (i == SHADOW_KEYFRAME_COUNT - 1 ? mMaxElevation :
+					mElevation + range * i / (SHADOW_KEYFRAME_COUNT - 1));
+			mShadowKeyframeElevations[i] = elevation;
+			mShadowKeyframes[i] = RoundedButtonShadowCache.obtain(mCornerRadius, elevation,
+					mInsetShadowExtra, mShadowStartColor, mShadowEndColor);
+		}
+		mShadowKeyframesValid = true;
+	}
+
+	private boolean isUsingShadowKeyframes() {
+		return mAnimating && mUseShadowKeyframes && mShadowKeyframesValid;
+	}
+
+	/**
+	 * Returns the elevation that the next shadow rebuild will draw the shadow at.
+	 */
+	private float getTargetShadowElevation() {
+		if (isUsingShadowKeyframes()) {
+			return mShadowKeyframeElevations[getNearestShadowKeyframe(mVisualElevation)];
+		}
+		return mVisualElevation;
+	}
+
+	/**
+	 * Computes the area covered by the shadow when drawn at the given elevation. The shadow
+	 * extends elevation pixels beyond the button and is offset elevation / 2 pixels down.
+	 */
+	private void getShadowBounds(float elevation, RectF outRect) {
+		outRect.set(mButtonBounds.left - elevation, mButtonBounds.top - elevation / 2,
+				mButtonBounds.right + elevation, mButtonBounds.bottom + elevation * 3 / 2);
+	}
+
+	/**
+	 * Invalidates the part of the shadow ring that is visible before or after a change of
+	 * elevation. The shadow is stretched across the whole ring, so all of it changes, but an
+	 * opaque fill hides the ring's center; only the four strips around the largest rectangle
+	 * inside the fill are invalidated.
+	 */
+	private void invalidateShadow(float fromElevation, float toElevation) {
+		if ((mDirtyFlags & DIRTY_BOUNDS) != 0 || mDelegate.getView().getBackground() != this) {
+			invalidateSelf();
+			return;
+		}
+		mLastInvalidatedRectCount = 0;
+		final RectF outer = mShadowBoundsF;
+		getShadowBounds(fromElevation, outer);
+		getShadowBounds(toElevation, mInvalidRectF);
+		outer.union(mInvalidRectF);
+
+		final float inset = mCornerRadius * (float) (1 - RoundedButtonDelegate.COS_45);
+		final float innerLeft = mButtonBounds.left + inset;
+		final float innerTop = mButtonBounds.top + inset;
+		final float innerRight = mButtonBounds.right - inset;
+		final float innerBottom = mButtonBounds.bottom - inset;
+		if (!isFillOpaque() || innerLeft >= innerRight || innerTop >= innerBottom) {
+			invalidateRect(outer);
+			return;
+		}
+		mInvalidRectF.set(outer.left, outer.top, outer.right, innerTop);
+		invalidateRect(mInvalidRectF);
+		mInvalidRectF.set(outer.left, innerBottom, outer.right, outer.bottom);
+		invalidateRect(mInvalidRectF);
+		mInvalidRectF.set(outer.left, innerTop, innerLeft, innerBottom);
+		invalidateRect(mInvalidRectF);
+		mInvalidRectF.set(innerRight, innerTop, outer.right, innerBottom);
+		invalidateRect(mInvalidRectF);
+	}
+
+	/**
+	 * Invalidates the area covered by the button fill.
+	 */
+	private void invalidateFill() {
+		if ((mDirtyFlags & DIRTY_BOUNDS) != 0) {
+			invalidateSelf();
+			return;
+		}
+		mLastInvalidatedRectCount = 0;
+		mInvalidRectF.set(mButtonBounds);
+		invalidateRect(mInvalidRectF);
+	}
 
-		if (mCornerShadowPath == null) {
-			mCornerShadowPath = new Path();
+	/**
+	 * Invalidates only the given region of this drawable. Drawable.invalidateSelf() always
+	 * invalidates the full bounds, so when this drawable is its view's background the region
+	 * is invalidated on the view directly.
+	 */
+	protected void invalidateRect(RectF dirty) {
+		// Leave room for anti-aliasing.
+		dirty.inset(-1.0f, -1.0f);
+		dirty.roundOut(mInvalidRect);
+		if (mLastInvalidatedRectCount < mLastInvalidatedRects.length) {
+			mLastInvalidatedRects[mLastInvalidatedRectCount++].set(mInvalidRect);
+		}
+		View view = mDelegate.getView();
+		if (view.getBackground() == this) {
+			// Background bounds are in content coordinates, drawn at the view's scroll offset.
+			final int scrollX = view.getScrollX();
+			final int scrollY = view.getScrollY();
+			view.invalidate(mInvalidRect.left + scrollX, mInvalidRect.top + scrollY,
+					mInvalidRect.right + scrollX, mInvalidRect.bottom + scrollY);
 		} else {
-			mCornerShadowPath.reset();
-		}
-		mCornerShadowPath.setFillType(Path.FillType.EVEN_ODD);
-		mCornerShadowPath.moveTo(-innerRadius, 0);
-		mCornerShadowPath.lineTo(-outerRadius, 0);
-		// outer arc
-		mCornerShadowPath.arcTo(outerBounds, 180f, 90f, false);
-		// inner arc
-		mCornerShadowPath.arcTo(innerBounds, 270f, -90f, false);
-		mCornerShadowPath.close();
-
-		final float startRatio = innerRadius / outerRadius;
-		final int[] colors = new int[]{mShadowStartColor, mShadowStartColor, mShadowEndColor};
-		final float[] stops = new float[]{0.0f, startRatio, 1.0f};
-		RadialGradient radialGradient = new RadialGradient(0, 0, outerRadius,
-				colors, stops, Shader.TileMode.CLAMP);
-		mCornerShadowPaint.setShader(radialGradient);
-
-		// We offset the content elevation/2 pixels up to make it more realistic.
-		// this is why edge shadow shader has some extra space
-		// When drawing bottom edge shadow, we use that extra space.
-		LinearGradient linearGradient = new LinearGradient(
-				0, 0,
-				0, -outerRadius,
-				colors, stops, Shader.TileMode.CLAMP);
-		mEdgeShadowPaint.setShader(linearGradient);
-	}
-
-	private void buildComponents(Rect bounds) {
+			invalidateSelf();
+		}
+	}
+
+	private int getNearestShadowKeyframe(float elevation) {
+		final float range = mMaxElevation - mElevation;
+		if (range == 0.0f) {
+			return 0;
+		}
+		int index = Math.round((elevation - mElevation) / range * (SHADOW_KEYFRAME_COUNT - 1));
+		return Math.max(0, Math.min(index, SHADOW_KEYFRAME_COUNT - 1));
+	}
+
+	private void buildButtonBounds(Rect bounds) {
+		mBoundsRebuildCount++;
 		// Button is offset SHADOW_MULTIPLIER * maxElevation to account for the shadow shift.
 		// We could have different top-bottom offsets to avoid extra gap above but in that case
 		// center aligning Views inside the Button would be problematic.
 		final float verticalOffset = mMaxElevation * SHADOW_MULTIPLIER;
 		mButtonBounds.set(bounds.left + mMaxElevation, bounds.top + verticalOffset,
 				bounds.right - mMaxElevation, bounds.bottom - verticalOffset);
-		buildShadowCorners();
+	}
+
+	private void buildColor() {
+		mColorRebuildCount++;
+		mPaint.setColor(mColor.getColorForState(getState(), mColor.getDefaultColor()));
 	}
 
 	protected void invalidatePadding() {
@@ -357,13 +813,27 @@ public class RoundedButtonBackgroundEclairMr1 extends Drawable
 
 	protected void animateShadow(boolean pressed) {
 		mPressed = pressed;
-		mAnimStartTime = System.currentTimeMillis();
+		// The cache is bypassed while animating, and re-rendered into the same bitmap on the
+		// first draw after the animation ends.
+		mLayerCacheValid = false;
+		mAnimating = true;
+		mAnimStartTime = 0L;
 		mAnimFromElevation = mVisualElevation;
 		mAnimToElevation = (pressed ? mMaxElevation : mElevation);
 		float fraction = (Math.abs(mAnimToElevation - mAnimFromElevation) /
 				Math.abs(mMaxElevation - mElevation));
 		mAnimDuration = (long) (mShortAnimTime * fraction);
-		mDirty = true;
-		invalidateSelf();
+		if (mUseShadowKeyframes && !mShadowKeyframesValid) {
+			buildShadowKeyframes();
+		}
+		RoundedButtonAnimationClock.addCallback(mAnimationFrameCallback);
+	}
+
+	protected void stopShadowAnimation() {
+		if (mAnimating) {
+			mAnimating = false;
+			mAnimStartTime = 0L;
+			RoundedButtonAnimationClock.removeCallback(mAnimationFrameCallback);
+		}
 	}
 }
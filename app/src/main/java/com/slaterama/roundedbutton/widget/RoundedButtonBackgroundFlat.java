@@ -0,0 +1,189 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+import com.slaterama.roundedbutton.GraphicsCompat;
+import com.slaterama.roundedbutton.LogEx;
+import com.slaterama.roundedbutton.ViewCompatEx;
+
+/**
+ * A background that draws only the button fill, without a shadow. Elevation is kept so that
+ * it can be read back, but is not drawn. With compat padding the button keeps the size it
+ * would have with a shadow.
+ */
+public class RoundedButtonBackgroundFlat extends Drawable
+		implements RoundedButtonBackgroundImpl {
+
+	private static final LogEx.Section SECTION_DRAW =
+			LogEx.newSection("RoundedButtonBackgroundFlat#draw");
+
+	protected RoundedButtonDelegate mDelegate;
+	protected ColorStateList mColor;
+	protected float mCornerRadius;
+	protected float mElevation;
+	protected float mMaxElevation;
+	protected boolean mUseCompatPadding;
+
+	private final Paint mPaint;
+	private final RectF mButtonBounds;
+	private int mPaddingHorizontal;
+	private int mPaddingVertical;
+
+	public RoundedButtonBackgroundFlat(RoundedButtonDelegate delegate, ColorStateList color,
+	                                   float cornerRadius, float elevation,
+	                                   float maxElevation, boolean useCompatPadding) {
+		mDelegate = delegate;
+		mColor = color;
+		mCornerRadius = cornerRadius;
+		mElevation = elevation;
+		mMaxElevation = maxElevation;
+		mUseCompatPadding = useCompatPadding;
+
+		mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+		mPaint.setColor(color.getDefaultColor());
+		mButtonBounds = new RectF();
+
+		ViewCompatEx.setBackground(delegate.getView(), this);
+
+		invalidatePadding();
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		mPaint.setAlpha(alpha);
+		invalidateSelf();
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter cf) {
+		mPaint.setColorFilter(cf);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		// Only a square, unpadded and opaque fill covers the whole of the bounds.
+		if (mCornerRadius == 0.0f && !mUseCompatPadding &&
+				Color.alpha(mPaint.getColor()) == 255 && mPaint.getAlpha() == 255) {
+			return PixelFormat.OPAQUE;
+		}
+		return PixelFormat.TRANSLUCENT;
+	}
+
+	@Override
+	public boolean isStateful() {
+		return mColor.isStateful();
+	}
+
+	@Override
+	protected void onBoundsChange(Rect bounds) {
+		super.onBoundsChange(bounds);
+		buildButtonBounds(bounds);
+	}
+
+	@Override
+	protected boolean onStateChange(int[] stateSet) {
+		int color = mColor.getColorForState(stateSet, mColor.getDefaultColor());
+		if (mPaint.getColor() == color) {
+			return super.onStateChange(stateSet);
+		}
+		mPaint.setColor(color);
+		return true;
+	}
+
+	@Override
+	public void draw(Canvas canvas) {
+		final long start = LogEx.beginSection(SECTION_DRAW);
+		try {
+			GraphicsCompat.drawRoundRect(canvas, mButtonBounds, mCornerRadius, mCornerRadius,
+					mPaint);
+		} finally {
+			LogEx.endSection(SECTION_DRAW, start);
+		}
+	}
+
+	@Override
+	public void setColor(ColorStateList color) {
+		mColor = color;
+		mPaint.setColor(color.getColorForState(getState(), color.getDefaultColor()));
+		invalidateSelf();
+	}
+
+	@Override
+	public float getCornerRadius() {
+		return mCornerRadius;
+	}
+
+	@Override
+	public void setCornerRadius(float cornerRadius) {
+		if (cornerRadius != mCornerRadius) {
+			mCornerRadius = cornerRadius;
+			invalidateSelf();
+			mDelegate.getView().requestLayout();
+		}
+	}
+
+	@Override
+	public float getElevation() {
+		return mElevation;
+	}
+
+	@Override
+	public void setElevation(float elevation) {
+		mElevation = elevation;
+	}
+
+	@Override
+	public float getMaxElevation() {
+		return mMaxElevation;
+	}
+
+	@Override
+	public void setMaxElevation(float maxElevation) {
+		if (maxElevation != mMaxElevation) {
+			mMaxElevation = maxElevation;
+			invalidatePadding();
+		}
+	}
+
+	@Override
+	public boolean isUseCompatPadding() {
+		return mUseCompatPadding;
+	}
+
+	@Override
+	public void setUseCompatPadding(boolean useCompatPadding) {
+		if (useCompatPadding != mUseCompatPadding) {
+			mUseCompatPadding = useCompatPadding;
+			invalidatePadding();
+		}
+	}
+
+	private void buildButtonBounds(Rect bounds) {
+		mButtonBounds.set(bounds.left + mPaddingHorizontal, bounds.top + mPaddingVertical,
+				bounds.right - mPaddingHorizontal, bounds.bottom - mPaddingVertical);
+	}
+
+	protected void invalidatePadding() {
+		if (mUseCompatPadding) {
+			// Pad as much as the compat shadow would.
+			mPaddingHorizontal = (int) Math.ceil(mMaxElevation);
+			mPaddingVertical = (int) Math.ceil(mMaxElevation * SHADOW_MULTIPLIER);
+		} else {
+			mPaddingHorizontal = 0;
+			mPaddingVertical = 0;
+		}
+		buildButtonBounds(getBounds());
+		invalidateSelf();
+		mDelegate.setShadowPadding(mPaddingHorizontal, mPaddingVertical, mPaddingHorizontal,
+				mPaddingVertical);
+	}
+}
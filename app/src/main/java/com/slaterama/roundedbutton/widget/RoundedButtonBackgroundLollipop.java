@@ -1,11 +1,14 @@
 package com.slaterama.roundedbutton.widget;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.animation.StateListAnimator;
 import android.annotation.TargetApi;
 import android.content.res.ColorStateList;
 import android.content.res.Resources;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Outline;
 import android.graphics.Paint;
@@ -18,22 +21,35 @@ import android.os.Build;
 import android.util.TypedValue;
 import android.view.View;
 
+import com.slaterama.roundedbutton.LogEx;
+
 @TargetApi(Build.VERSION_CODES.LOLLIPOP)
 public class RoundedButtonBackgroundLollipop extends Drawable
 		implements RoundedButtonBackgroundImpl {
 
-	protected static StateListAnimator newDefaultStateListAnimator(View view,
-	                                                               float elevation,
-	                                                               float maxElevation) {
+	private static final LogEx.Section SECTION_DRAW =
+			LogEx.newSection("RoundedButtonBackgroundLollipop#draw");
+
+	/**
+	 * @param listener A listener added to each elevation animator, or null.
+	 */
+	protected static StateListAnimator newDefaultStateListAnimator(
+			View view, float elevation, float maxElevation, Animator.AnimatorListener listener) {
 		Resources resources = view.getResources();
 		int duration = resources.getInteger(android.R.integer.config_shortAnimTime);
 		StateListAnimator stateListAnimator = new StateListAnimator();
 		ObjectAnimator animator = ObjectAnimator.ofFloat(view, PROPERTY_ELEVATION, elevation,
 				maxElevation);
 		animator.setDuration(duration);
+		if (listener != null) {
+			animator.addListener(listener);
+		}
 		stateListAnimator.addState(SPECS_ENABLED_PRESSED, animator);
 		animator = ObjectAnimator.ofFloat(view, PROPERTY_ELEVATION, maxElevation, elevation);
 		animator.setDuration(duration);
+		if (listener != null) {
+			animator.addListener(listener);
+		}
 		stateListAnimator.addState(SPECS_DEFAULT, animator);
 		return stateListAnimator;
 	}
@@ -77,7 +93,20 @@ public class RoundedButtonBackgroundLollipop extends Drawable
 		// TODO Make an xml state list animator and set it in styles.xml
 		StateListAnimator stateListAnimator = view.getStateListAnimator();
 //		if (stateListAnimator == null) {
-			view.setStateListAnimator(newDefaultStateListAnimator(view, elevation, maxElevation));
+			// Elevation is a render node property, so the press animation does not redraw the
+			// button and a hardware layer pays off while it runs.
+			view.setStateListAnimator(newDefaultStateListAnimator(view, elevation, maxElevation,
+					new AnimatorListenerAdapter() {
+						@Override
+						public void onAnimationStart(Animator animation) {
+							mDelegate.onBackgroundAnimationStart();
+						}
+
+						@Override
+						public void onAnimationEnd(Animator animation) {
+							mDelegate.onBackgroundAnimationEnd();
+						}
+					}));
 //		}
 
 		invalidatePadding(null);
@@ -97,7 +126,12 @@ public class RoundedButtonBackgroundLollipop extends Drawable
 
 	@Override
 	public int getOpacity() {
-		return PixelFormat.OPAQUE;
+		// Only a square, unpadded and opaque fill covers the whole of the bounds.
+		if (mCornerRadius == 0.0f && !mUseCompatPadding &&
+				Color.alpha(mPaint.getColor()) == 255) {
+			return PixelFormat.OPAQUE;
+		}
+		return PixelFormat.TRANSLUCENT;
 	}
 
 	@Override
@@ -113,7 +147,12 @@ public class RoundedButtonBackgroundLollipop extends Drawable
 
 	@Override
 	public void draw(Canvas canvas) {
-		canvas.drawRoundRect(mBoundsF, mCornerRadius, mCornerRadius, mPaint);
+		final long start = LogEx.beginSection(SECTION_DRAW);
+		try {
+			canvas.drawRoundRect(mBoundsF, mCornerRadius, mCornerRadius, mPaint);
+		} finally {
+			LogEx.endSection(SECTION_DRAW, start);
+		}
 	}
 
 	@Override
@@ -0,0 +1,174 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.annotation.TargetApi;
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.os.Build;
+
+import com.slaterama.roundedbutton.LogEx;
+
+/**
+ * A compat background that draws its whole shadow ring with a single
+ * {@link Canvas#drawVertices} call. The ring is a triangle mesh between the inner and outer
+ * shadow contours, with the shadow start and end colors assigned per vertex, plus a fan that
+ * fills the area under the button. The ring indices come first, so the fan can be left out
+ * when the button fill hides it.
+ *
+ * <p>Hardware accelerated canvases do not support {@link Canvas#drawVertices}, so this
+ * background falls back to the default shadow renderer when drawing to one.</p>
+ */
+@TargetApi(Build.VERSION_CODES.ECLAIR_MR1)
+public class RoundedButtonBackgroundMesh extends RoundedButtonBackgroundEclairMr1 {
+
+	// The number of segments used to approximate each quarter circle corner
+	static final int CORNER_SEGMENTS = 6;
+
+	// The number of points along each of the inner and outer contours
+	private static final int CONTOUR_POINTS = 4 * (CORNER_SEGMENTS + 1);
+
+	// Inner contour points, then outer contour points, then the center point
+	private static final int VERTEX_COUNT = 2 * CONTOUR_POINTS + 1;
+
+	// Two triangles per ring segment
+	private static final int RING_INDEX_COUNT = 6 * CONTOUR_POINTS;
+
+	// The ring plus one triangle per center fan segment
+	private static final int INDEX_COUNT = RING_INDEX_COUNT + 3 * CONTOUR_POINTS;
+
+	private static final LogEx.Section SECTION_DRAW_SHADOW =
+			LogEx.newSection("RoundedButtonBackgroundMesh#drawShadow");
+
+	private final Paint mMeshPaint;
+	private final float[] mVertices;
+	private final int[] mColors;
+	private final short[] mIndices;
+
+	private float mMeshLeft;
+	private float mMeshTop;
+	private float mMeshRight;
+	private float mMeshBottom;
+	private float mMeshCornerRadius = -1.0f;
+	private float mMeshElevation = -1.0f;
+
+	public RoundedButtonBackgroundMesh(RoundedButtonDelegate delegate, ColorStateList color,
+	                                   float cornerRadius, float elevation,
+	                                   float maxElevation, boolean useCompatPadding) {
+		super(delegate, color, cornerRadius, elevation, maxElevation, useCompatPadding);
+
+		mMeshPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+		mMeshPaint.setStyle(Paint.Style.FILL);
+
+		mVertices = new float[VERTEX_COUNT * 2];
+		// Some versions of Canvas check the colors array against the number of vertex
+		// values rather than the number of vertices, so size it to match.
+		mColors = new int[VERTEX_COUNT * 2];
+		mIndices = new short[INDEX_COUNT];
+
+		for (int i = 0; i < CONTOUR_POINTS; i++) {
+			mColors[i] = mShadowStartColor;
+			mColors[CONTOUR_POINTS + i] = mShadowEndColor;
+		}
+		mColors[2 * CONTOUR_POINTS] = mShadowStartColor;
+
+		final short center = (short) (2 * CONTOUR_POINTS);
+		int ringIndex = 0;
+		int fanIndex = RING_INDEX_COUNT;
+		for (int i = 0; i < CONTOUR_POINTS; i++) {
+			final short inner = (short) i;
+			final short nextInner = (short) ((i + 1) % CONTOUR_POINTS);
+			final short outer = (short) (CONTOUR_POINTS + i);
+			final short nextOuter = (short) (CONTOUR_POINTS + (i + 1) % CONTOUR_POINTS);
+			mIndices[ringIndex++] = inner;
+			mIndices[ringIndex++] = outer;
+			mIndices[ringIndex++] = nextOuter;
+			mIndices[ringIndex++] = inner;
+			mIndices[ringIndex++] = nextOuter;
+			mIndices[ringIndex++] = nextInner;
+			mIndices[fanIndex++] = center;
+			mIndices[fanIndex++] = inner;
+			mIndices[fanIndex++] = nextInner;
+		}
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		super.setAlpha(alpha);
+		mMeshPaint.setAlpha(alpha);
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter cf) {
+		super.setColorFilter(cf);
+		mMeshPaint.setColorFilter(cf);
+	}
+
+	@Override
+	protected void drawShadow(Canvas canvas) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB &&
+				canvas.isHardwareAccelerated()) {
+			super.drawShadow(canvas);
+			return;
+		}
+		final long start = LogEx.beginSection(SECTION_DRAW_SHADOW);
+		try {
+			if (mButtonBounds.left != mMeshLeft || mButtonBounds.top != mMeshTop ||
+					mButtonBounds.right != mMeshRight || mButtonBounds.bottom != mMeshBottom ||
+					mCornerRadius != mMeshCornerRadius || mShadowElevation != mMeshElevation) {
+				buildMesh();
+			}
+			final int indexCount = (isShadowCenterHidden() ? RING_INDEX_COUNT : INDEX_COUNT);
+			canvas.drawVertices(Canvas.VertexMode.TRIANGLES, mVertices.length, mVertices, 0,
+					null, 0, mColors, 0, mIndices, 0, indexCount, mMeshPaint);
+		} finally {
+			LogEx.endSection(SECTION_DRAW_SHADOW, start);
+		}
+	}
+
+	private void buildMesh() {
+		mMeshLeft = mButtonBounds.left;
+		mMeshTop = mButtonBounds.top;
+		mMeshRight = mButtonBounds.right;
+		mMeshBottom = mButtonBounds.bottom;
+		mMeshCornerRadius = mCornerRadius;
+		mMeshElevation = mShadowElevation;
+
+		final float insetShadow = mShadowElevation / 2 + mInsetShadowExtra;
+		final float innerRadius = Math.max(mCornerRadius - insetShadow, 0.0f);
+		final float outerRadius = mCornerRadius + mShadowElevation;
+
+		// Corner centers collapse onto the center line when the button is narrower than its
+		// corners, just as the default renderer skips its edges in that case.
+		float left = mButtonBounds.left + mCornerRadius;
+		float right = mButtonBounds.right - mCornerRadius;
+		if (right < left) {
+			left = right = mButtonBounds.centerX();
+		}
+		float top = mButtonBounds.top + mCornerRadius;
+		float bottom = mButtonBounds.bottom - mCornerRadius;
+		if (bottom < top) {
+			top = bottom = mButtonBounds.centerY();
+		}
+
+		int point = 0;
+		for (int corner = 0; corner < 4; corner++) {
+			// Corners run clockwise starting from the left top
+			final float centerX = (corner == 0 || corner == 3 ? left : right);
+			final float centerY = (corner < 2 ? top : bottom);
+			final double startAngle = Math.PI * (corner + 2) / 2;
+			for (int i = 0; i <= CORNER_SEGMENTS; i++) {
+				final double angle = startAngle + Math.PI / 2 * i / CORNER_SEGMENTS;
+				final float cos = (float) Math.cos(angle);
+				final float sin = (float) Math.sin(angle);
+				mVertices[2 * point] = centerX + innerRadius * cos;
+				mVertices[2 * point + 1] = centerY + innerRadius * sin;
+				mVertices[2 * (CONTOUR_POINTS + point)] = centerX + outerRadius * cos;
+				mVertices[2 * (CONTOUR_POINTS + point) + 1] = centerY + outerRadius * sin;
+				point++;
+			}
+		}
+		mVertices[4 * CONTOUR_POINTS] = mButtonBounds.centerX();
+		mVertices[4 * CONTOUR_POINTS + 1] = mButtonBounds.centerY();
+	}
+}
@@ -8,4 +8,21 @@ public interface RoundedButtonDelegate {
 
 	View getView();
 	void setShadowPadding(int left, int top, int right, int bottom);
+
+	/**
+	 * Promotes the button to a hardware layer, subject to the
+	 * {@link RoundedButtonLayerHelper.LayerPolicy}, until the matching call to
+	 * {@link #onBackgroundAnimationEnd()}. The Lollipop background calls this around its
+	 * press elevation animation, which only changes a render node property. Call it around
+	 * programmatic animations of view properties such as translation, scale or alpha, or add
+	 * the button's {@code getLayerAnimatorListener()} to the animator; the listener keeps the
+	 * button on a hardware layer while the animator runs.
+	 * <p>
+	 * The compat backgrounds do not call this around their press animation, and it should not
+	 * be called around corner radius animations: those redraw the background on every frame,
+	 * so the layer would be re-rendered as well as composited.
+	 */
+	void onBackgroundAnimationStart();
+
+	void onBackgroundAnimationEnd();
 }
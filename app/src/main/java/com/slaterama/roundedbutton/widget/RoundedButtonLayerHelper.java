@@ -0,0 +1,118 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.support.v4.app.ActivityManagerCompat;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+/**
+ * Promotes a view to a hardware layer while animations of its view properties run, and
+ * restores its previous layer type once the last of them ends. Whether a view is promoted is
+ * decided by the process-wide {@link LayerPolicy}.
+ */
+public final class RoundedButtonLayerHelper {
+
+	/**
+	 * Decides whether a view should be promoted to a hardware layer while it animates.
+	 */
+	public interface LayerPolicy {
+		boolean shouldPromoteToHardwareLayer(View view);
+	}
+
+	/**
+	 * Promotes hardware accelerated views, except on low RAM devices.
+	 */
+	public static final LayerPolicy DEFAULT_POLICY = new LayerPolicy() {
+		@Override
+		@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+		public boolean shouldPromoteToHardwareLayer(View view) {
+			if (!view.isHardwareAccelerated()) {
+				return false;
+			}
+			ActivityManager activityManager = (ActivityManager) view.getContext()
+					.getSystemService(Context.ACTIVITY_SERVICE);
+			return activityManager == null ||
+					!ActivityManagerCompat.isLowRamDevice(activityManager);
+		}
+	};
+
+	/**
+	 * Never promotes views.
+	 */
+	public static final LayerPolicy NEVER_POLICY = new LayerPolicy() {
+		@Override
+		public boolean shouldPromoteToHardwareLayer(View view) {
+			return false;
+		}
+	};
+
+	private static LayerPolicy sLayerPolicy = DEFAULT_POLICY;
+
+	public static LayerPolicy getLayerPolicy() {
+		return sLayerPolicy;
+	}
+
+	/**
+	 * Sets the policy used to decide whether buttons are promoted to hardware layers while
+	 * they animate. Pass {@link #NEVER_POLICY} to turn promotion off, for example on memory
+	 * constrained devices.
+	 */
+	public static void setLayerPolicy(LayerPolicy layerPolicy) {
+		sLayerPolicy = (layerPolicy == null ? NEVER_POLICY : layerPolicy);
+	}
+
+	private final View mView;
+	private int mAnimationCount;
+	private boolean mPromoted;
+	private int mSavedLayerType;
+	private Animator.AnimatorListener mAnimatorListener;
+
+	public RoundedButtonLayerHelper(View view) {
+		mView = view;
+	}
+
+	public void onAnimationStart() {
+		if (mAnimationCount++ == 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB &&
+				sLayerPolicy.shouldPromoteToHardwareLayer(mView)) {
+			mSavedLayerType = ViewCompat.getLayerType(mView);
+			if (mSavedLayerType != ViewCompat.LAYER_TYPE_HARDWARE) {
+				ViewCompat.setLayerType(mView, ViewCompat.LAYER_TYPE_HARDWARE, null);
+				mPromoted = true;
+			}
+		}
+	}
+
+	public void onAnimationEnd() {
+		if (mAnimationCount > 0 && --mAnimationCount == 0 && mPromoted) {
+			ViewCompat.setLayerType(mView, mSavedLayerType, null);
+			mPromoted = false;
+		}
+	}
+
+	/**
+	 * Returns a listener that brackets an animator with {@link #onAnimationStart()} and
+	 * {@link #onAnimationEnd()}.
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	public Animator.AnimatorListener getAnimatorListener() {
+		if (mAnimatorListener == null) {
+			mAnimatorListener = new AnimatorListenerAdapter() {
+				@Override
+				public void onAnimationStart(Animator animation) {
+					RoundedButtonLayerHelper.this.onAnimationStart();
+				}
+
+				@Override
+				public void onAnimationEnd(Animator animation) {
+					RoundedButtonLayerHelper.this.onAnimationEnd();
+				}
+			};
+		}
+		return mAnimatorListener;
+	}
+}
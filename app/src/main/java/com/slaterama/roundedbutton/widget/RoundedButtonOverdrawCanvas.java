@@ -0,0 +1,132 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+
+/**
+ * A software canvas used to count overdraw. Every shape drawn to it is additively blended with
+ * an alpha of 1 regardless of the paint it is drawn with, so after drawing, the alpha of each
+ * pixel is the number of times it was drawn.
+ */
+class RoundedButtonOverdrawCanvas extends Canvas {
+
+	private final Paint mCountingPaint;
+	private Bitmap mBitmap;
+	private int[] mPixels;
+
+	RoundedButtonOverdrawCanvas() {
+		mCountingPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mCountingPaint.setStyle(Paint.Style.FILL);
+		mCountingPaint.setColor(Color.argb(1, 0, 0, 0));
+		mCountingPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.ADD));
+	}
+
+	/**
+	 * Prepares the canvas to count the overdraw of a frame of the given size.
+	 */
+	void begin(int width, int height) {
+		if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+			if (mBitmap != null) {
+				mBitmap.recycle();
+			}
+			mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+			mPixels = new int[width * height];
+			setBitmap(mBitmap);
+		} else {
+			mBitmap.eraseColor(Color.TRANSPARENT);
+		}
+	}
+
+	/**
+	 * Returns the number of pixels drawn more than once since {@link #begin(int, int)}.
+	 */
+	int countOverdrawnPixels() {
+		final int width = mBitmap.getWidth();
+		final int height = mBitmap.getHeight();
+		mBitmap.getPixels(mPixels, 0, width, 0, 0, width, height);
+		int count = 0;
+		for (int pixel : mPixels) {
+			if (Color.alpha(pixel) > 1) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the counting paint, set to cover the same pixels as the given paint.
+	 */
+	private Paint getCountingPaint(Paint paint) {
+		mCountingPaint.setStyle(paint.getStyle());
+		mCountingPaint.setStrokeWidth(paint.getStrokeWidth());
+		return mCountingPaint;
+	}
+
+	void release() {
+		if (mBitmap != null) {
+			mBitmap.recycle();
+			mBitmap = null;
+			mPixels = null;
+		}
+	}
+
+	@Override
+	public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+		super.drawRect(left, top, right, bottom, getCountingPaint(paint));
+	}
+
+	@Override
+	public void drawRect(RectF rect, Paint paint) {
+		super.drawRect(rect, getCountingPaint(paint));
+	}
+
+	@Override
+	public void drawRect(Rect r, Paint paint) {
+		super.drawRect(r, getCountingPaint(paint));
+	}
+
+	@Override
+	public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+		super.drawRoundRect(rect, rx, ry, getCountingPaint(paint));
+	}
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	@Override
+	public void drawRoundRect(float left, float top, float right, float bottom, float rx,
+	                          float ry, Paint paint) {
+		super.drawRoundRect(left, top, right, bottom, rx, ry, getCountingPaint(paint));
+	}
+
+	@Override
+	public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+	                    Paint paint) {
+		super.drawArc(oval, startAngle, sweepAngle, useCenter, getCountingPaint(paint));
+	}
+
+	@Override
+	public void drawCircle(float cx, float cy, float radius, Paint paint) {
+		super.drawCircle(cx, cy, radius, getCountingPaint(paint));
+	}
+
+	@Override
+	public void drawPath(Path path, Paint paint) {
+		super.drawPath(path, getCountingPaint(paint));
+	}
+
+	@Override
+	public void drawVertices(VertexMode mode, int vertexCount, float[] verts, int vertOffset,
+	                         float[] texs, int texOffset, int[] colors, int colorOffset,
+	                         short[] indices, int indexOffset, int indexCount, Paint paint) {
+		super.drawVertices(mode, vertexCount, verts, vertOffset, texs, texOffset, null, 0,
+				indices, indexOffset, indexCount, getCountingPaint(paint));
+	}
+}
@@ -0,0 +1,254 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.graphics.LinearGradient;
+import android.graphics.Path;
+import android.graphics.RadialGradient;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process-wide, bounded cache of the corner path and gradient shaders used by
+ * {@link RoundedButtonBackgroundEclairMr1} to draw its shadow. Backgrounds that share a corner
+ * radius, elevation and shadow colors share a single set of shadow components. The least
+ * recently used entries are evicted once the cache grows beyond {@link #getMaxSize()}.
+ */
+public final class RoundedButtonShadowCache {
+
+	public static final int DEFAULT_MAX_SIZE = 32;
+
+	private static final Object sLock = new Object();
+
+	private static final Key sLookupKey = new Key();
+
+	private static int sMaxSize = DEFAULT_MAX_SIZE;
+
+	private static long sHitCount;
+
+	private static long sMissCount;
+
+	private static long sEvictionCount;
+
+	private static long sBuildCount;
+
+	private static final LinkedHashMap<Key, Shadow> sCache =
+			new LinkedHashMap<Key, Shadow>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Shadow> eldest) {
+					if (size() > sMaxSize) {
+						sEvictionCount++;
+						return true;
+					}
+					return false;
+				}
+			};
+
+	private RoundedButtonShadowCache() {
+	}
+
+	/**
+	 * Returns the shadow components for the given parameters, building and caching them
+	 * if they are not already cached.
+	 */
+	static Shadow obtain(float cornerRadius, float elevation, float insetShadowExtra,
+	                     int startColor, int endColor) {
+		synchronized (sLock) {
+			sLookupKey.set(cornerRadius, elevation, insetShadowExtra, startColor, endColor);
+			Shadow shadow = sCache.get(sLookupKey);
+			if (shadow != null) {
+				sHitCount++;
+				return shadow;
+			}
+			sMissCount++;
+			shadow = build(cornerRadius, elevation, insetShadowExtra, startColor, endColor);
+			sCache.put(new Key(sLookupKey), shadow);
+			return shadow;
+		}
+	}
+
+	/**
+	 * Builds new shadow components for the given parameters without consulting or
+	 * populating the cache.
+	 */
+	static Shadow build(float cornerRadius, float elevation, float insetShadowExtra,
+	                    int startColor, int endColor) {
+		synchronized (sLock) {
+			sBuildCount++;
+		}
+		float insetShadow = elevation / 2 + insetShadowExtra;
+		float innerRadius = Math.max(cornerRadius - insetShadow, 0.0f);
+		float outerRadius = cornerRadius + elevation;
+		RectF innerBounds = new RectF(-innerRadius, -innerRadius, innerRadius, innerRadius);
+		RectF outerBounds = new RectF(-outerRadius, -outerRadius, outerRadius, outerRadius);
+
+		Path cornerPath = new Path();
+		cornerPath.setFillType(Path.FillType.EVEN_ODD);
+		cornerPath.moveTo(-innerRadius, 0);
+		cornerPath.lineTo(-outerRadius, 0);
+		// outer arc
+		cornerPath.arcTo(outerBounds, 180f, 90f, false);
+		// inner arc
+		cornerPath.arcTo(innerBounds, 270f, -90f, false);
+		cornerPath.close();
+
+		final float startRatio = innerRadius / outerRadius;
+		final int[] colors = new int[]{startColor, startColor, endColor};
+		final float[] stops = new float[]{0.0f, startRatio, 1.0f};
+		RadialGradient cornerShader = new RadialGradient(0, 0, outerRadius,
+				colors, stops, Shader.TileMode.CLAMP);
+
+		// We offset the content elevation/2 pixels up to make it more realistic.
+		// this is why edge shadow shader has some extra space
+		// When drawing bottom edge shadow, we use that extra space.
+		LinearGradient edgeShader = new LinearGradient(
+				0, 0,
+				0, -outerRadius,
+				colors, stops, Shader.TileMode.CLAMP);
+
+		return new Shadow(cornerPath, cornerShader, edgeShader);
+	}
+
+	public static int getMaxSize() {
+		synchronized (sLock) {
+			return sMaxSize;
+		}
+	}
+
+	public static void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least 1");
+		}
+		synchronized (sLock) {
+			sMaxSize = maxSize;
+			Iterator<Key> iterator = sCache.keySet().iterator();
+			while (sCache.size() > sMaxSize && iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+				sEvictionCount++;
+			}
+		}
+	}
+
+	public static int size() {
+		synchronized (sLock) {
+			return sCache.size();
+		}
+	}
+
+	/**
+	 * Returns the number of times a background reused cached shadow components instead of
+	 * building its own.
+	 */
+	public static long getHitCount() {
+		synchronized (sLock) {
+			return sHitCount;
+		}
+	}
+
+	public static long getMissCount() {
+		synchronized (sLock) {
+			return sMissCount;
+		}
+	}
+
+	public static long getEvictionCount() {
+		synchronized (sLock) {
+			return sEvictionCount;
+		}
+	}
+
+	/**
+	 * Returns the number of shadows that have been built, whether or not they were cached.
+	 * Each build allocates a path and two shaders, so this count should not change while a
+	 * background using shadow keyframes animates.
+	 */
+	public static long getBuildCount() {
+		synchronized (sLock) {
+			return sBuildCount;
+		}
+	}
+
+	/**
+	 * Evicts all cached shadows and resets the hit, miss and eviction counts. Backgrounds
+	 * that are currently using a shadow keep their reference to it.
+	 */
+	public static void clear() {
+		synchronized (sLock) {
+			sCache.clear();
+			sHitCount = 0L;
+			sMissCount = 0L;
+			sEvictionCount = 0L;
+		}
+	}
+
+	/**
+	 * The immutable components used to draw a compat shadow. The path and shaders are
+	 * built around the corner origin and may be shared by any number of backgrounds.
+	 */
+	static final class Shadow {
+		final Path cornerPath;
+		final RadialGradient cornerShader;
+		final LinearGradient edgeShader;
+
+		Shadow(Path cornerPath, RadialGradient cornerShader, LinearGradient edgeShader) {
+			this.cornerPath = cornerPath;
+			this.cornerShader = cornerShader;
+			this.edgeShader = edgeShader;
+		}
+	}
+
+	private static final class Key {
+		private float mCornerRadius;
+		private float mElevation;
+		private float mInsetShadowExtra;
+		private int mStartColor;
+		private int mEndColor;
+
+		Key() {
+		}
+
+		Key(Key other) {
+			set(other.mCornerRadius, other.mElevation, other.mInsetShadowExtra,
+					other.mStartColor, other.mEndColor);
+		}
+
+		void set(float cornerRadius, float elevation, float insetShadowExtra, int startColor,
+		         int endColor) {
+			mCornerRadius = cornerRadius;
+			mElevation = elevation;
+			mInsetShadowExtra = insetShadowExtra;
+			mStartColor = startColor;
+			mEndColor = endColor;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return Float.floatToIntBits(mCornerRadius) == Float.floatToIntBits(other.mCornerRadius)
+					&& Float.floatToIntBits(mElevation) == Float.floatToIntBits(other.mElevation)
+					&& Float.floatToIntBits(mInsetShadowExtra) ==
+					Float.floatToIntBits(other.mInsetShadowExtra)
+					&& mStartColor == other.mStartColor
+					&& mEndColor == other.mEndColor;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = Float.floatToIntBits(mCornerRadius);
+			result = 31 * result + Float.floatToIntBits(mElevation);
+			result = 31 * result + Float.floatToIntBits(mInsetShadowExtra);
+			result = 31 * result + mStartColor;
+			result = 31 * result + mEndColor;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package com.slaterama.roundedbutton;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogExTest {
+
+	private final List<String> mMessages = Collections.synchronizedList(new ArrayList<String>());
+	private final List<LogSink> mSinks = new ArrayList<LogSink>();
+	private final List<String> mSystemTags = new ArrayList<String>();
+
+	private final LogSink mMessageSink = new LogSink() {
+		@Override
+		public void write(long timeMillis, int priority, String tag, String msg,
+		                  StackTraceElement frame) {
+			mMessages.add(tag + ": " + msg);
+		}
+	};
+
+	@After
+	public void tearDown() {
+		LogEx.stopAsync();
+		for (LogSink sink : mSinks) {
+			LogEx.removeSink(sink);
+		}
+		LogEx.setOverflowPolicy(LogEx.OVERFLOW_DROP);
+		LogEx.resetDroppedRecordCounts();
+		for (String tag : mSystemTags) {
+			Log.setTagLevel(tag, null);
+		}
+		LogEx.refreshLevels();
+		LogEx.clearLevelOverrides();
+		LogEx.setTagFormat("%s", LogEx.Placeholder.SIMPLE_CLASS_NAME);
+		LogEx.setMessageFormat("%s(%s:%d) %s", LogEx.Placeholder.METHOD_NAME,
+				LogEx.Placeholder.FILE_NAME, LogEx.Placeholder.LINE_NUMBER,
+				LogEx.Placeholder.MESSAGE);
+	}
+
+	@Test
+	public void systemPropertyLowersLevelOfInjectedSite() {
+		final String site = Unseen.class.getName() + "/run/1/LogExTest.java";
+		setSystemLevel("Unseen", LogEx.DEBUG);
+		addSink(mMessageSink);
+		LogEx.setMessageFormat("%s", LogEx.Placeholder.MESSAGE);
+		LogEx.Injected.d("debug", site);
+		LogEx.Injected.v("verbose", site);
+
+		assertEquals(Collections.singletonList("Unseen: debug"), mMessages);
+	}
+
+	@Test
+	public void refreshedSystemPropertyLowersLevelOfSeenTag() {
+		addSink(mMessageSink);
+		LogEx.setMessageFormat("%s", LogEx.Placeholder.MESSAGE);
+		Seen.log(LogEx.INFO, "info");
+		Seen.log(LogEx.DEBUG, "before");
+		setSystemLevel("Seen", LogEx.DEBUG);
+		LogEx.refreshLevels();
+		Seen.log(LogEx.DEBUG, "after");
+
+		assertEquals(Arrays.asList("Seen: info", "Seen: after"), mMessages);
+	}
+
+	@Test
+	public void callSiteLevelFollowsItsTag() {
+		addSink(mMessageSink);
+		LogEx.setTagFormat("%s", LogEx.Placeholder.MESSAGE);
+		LogEx.setMessageFormat("%s", LogEx.Placeholder.MESSAGE);
+		LogEx.setTagLevel("Loud", LogEx.VERBOSE);
+		for (String tag : new String[] {"Quiet", "Loud", "Quiet", "Loud"}) {
+			LogEx.v(tag, "verbose");
+		}
+
+		assertEquals(Arrays.asList("Loud: verbose", "Loud: verbose"), mMessages);
+	}
+
+	@Test
+	public void formatOverloadsTreatTheirStringAsFormat() {
+		addSink(mMessageSink);
+		LogEx.setMessageFormat("%s", LogEx.Placeholder.MESSAGE);
+		LogEx.i("%d of %.1f", 3, 2.5f);
+		LogEx.i("%.1f of %d", 2.5f, 3);
+		LogEx.printf(LogEx.INFO, "name=%s", "sample");
+		LogEx.printf(LogEx.INFO, "%s=%d", "count", 3);
+		LogEx.d("%d", 1);
+		LogEx.printf(LogEx.DEBUG, "%s", "filtered");
+
+		assertEquals(Arrays.asList("LogExTest: 3 of 2.5", "LogExTest: 2.5 of 3",
+				"LogExTest: name=sample", "LogExTest: count=3"), mMessages);
+	}
+
+	@Test(timeout = 10000)
+	public void flushWaitsUntilRecordsAreWritten() {
+		addSink(new LogSink() {
+			@Override
+			public void write(long timeMillis, int priority, String tag, String msg,
+			                  StackTraceElement frame) {
+				sleep(100L);
+				mMessages.add(msg);
+			}
+		});
+		LogEx.startAsync();
+		LogEx.i("first");
+		LogEx.i("second");
+		LogEx.flush();
+
+		assertEquals(2, mMessages.size());
+	}
+
+	@Test(timeout = 10000)
+	public void sinkLoggingIntoFullBufferDoesNotBlock() {
+		final AtomicInteger depth = new AtomicInteger();
+		addSink(new LogSink() {
+			@Override
+			public void write(long timeMillis, int priority, String tag, String msg,
+			                  StackTraceElement frame) {
+				mMessages.add(msg);
+				if (depth.getAndIncrement() == 0) {
+					for (int i = 0; i < 4; i++) {
+						LogEx.i("from sink");
+					}
+				}
+			}
+		});
+		LogEx.setOverflowPolicy(LogEx.OVERFLOW_BLOCK);
+		LogEx.startAsync(1);
+		LogEx.i("first");
+		LogEx.flush();
+		LogEx.stopAsync();
+
+		assertTrue(LogEx.getDroppedRecordCount() > 0);
+		assertEquals(5, mMessages.size() + LogEx.getDroppedRecordCount());
+	}
+
+	@Test(timeout = 30000)
+	public void recordsLoggedWhileStoppingAreWritten() throws InterruptedException {
+		final AtomicInteger count = new AtomicInteger();
+		addSink(new LogSink() {
+			@Override
+			public void write(long timeMillis, int priority, String tag, String msg,
+			                  StackTraceElement frame) {
+				count.incrementAndGet();
+			}
+		});
+		LogEx.setOverflowPolicy(LogEx.OVERFLOW_BLOCK);
+		final int threadCount = 4;
+		final int recordCount = 2000;
+		for (int round = 0; round < 10; round++) {
+			count.set(0);
+			LogEx.startAsync(16);
+			final Thread[] threads = new Thread[threadCount];
+			for (int i = 0; i < threadCount; i++) {
+				threads[i] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						for (int j = 0; j < recordCount; j++) {
+							LogEx.i("record");
+						}
+					}
+				});
+				threads[i].start();
+			}
+			sleep(round);
+			LogEx.stopAsync();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+
+			assertEquals(threadCount * recordCount, count.get());
+		}
+	}
+
+	private void setSystemLevel(String tag, int level) {
+		mSystemTags.add(tag);
+		Log.setTagLevel(tag, level);
+	}
+
+	private void addSink(LogSink sink) {
+		mSinks.add(sink);
+		LogEx.addSink(sink);
+	}
+
+	private static class Unseen {
+	}
+
+	private static class Seen {
+		static void log(int priority, String msg) {
+			if (priority == LogEx.INFO) {
+				LogEx.i(msg);
+			} else {
+				LogEx.d(msg);
+			}
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.slaterama.roundedbutton;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedLogSinkTest {
+
+	private static final int INFO = 4;
+	private static final int WARN = 5;
+	private static final int RING_SIZE = 1024;
+	private static final StackTraceElement FRAME =
+			new StackTraceElement("com.example.Foo", "bar", "Foo.java", 42);
+
+	@Rule
+	public final TemporaryFolder mFolder = new TemporaryFolder();
+
+	@Test
+	public void decodesWrittenRecords() throws IOException {
+		final File file = mFolder.newFile();
+		final MappedLogSink sink = new MappedLogSink(file, 1024, RING_SIZE);
+		sink.write(1000L, INFO, "Tag", "first", FRAME);
+		sink.write(2000L, WARN, "Other", "second", null);
+		sink.write(3000L, INFO, null, null, FRAME);
+		sink.close();
+
+		final String[] lines = decode(file);
+		assertEquals(3, lines.length);
+		assertEquals("I/Tag [com.example.Foo.bar(Foo.java:42)]: first", lines[0]);
+		assertEquals("W/Other [?]: second", lines[1]);
+		assertEquals("I/? [com.example.Foo.bar(Foo.java:42)]: ", lines[2]);
+	}
+
+	@Test
+	public void keepsNewestRecordsAfterWrapping() throws IOException {
+		final File file = mFolder.newFile();
+		final MappedLogSink sink = new MappedLogSink(file, 1024, RING_SIZE);
+		final int count = 200;
+		for (int i = 0; i < count; i++) {
+			sink.write(i, INFO, "Tag", "message " + i, FRAME);
+		}
+		sink.close();
+
+		final String[] lines = decode(file);
+		assertTrue(lines.length > 1 && lines.length < count);
+		for (int i = 0; i < lines.length; i++) {
+			final int expected = count - lines.length + i;
+			assertEquals("I/Tag [com.example.Foo.bar(Foo.java:42)]: message " + expected,
+					lines[i]);
+		}
+	}
+
+	@Test
+	public void resumesAfterReopening() throws IOException {
+		final File file = mFolder.newFile();
+		MappedLogSink sink = new MappedLogSink(file, 1024, RING_SIZE);
+		sink.write(0L, INFO, "Tag", "before", FRAME);
+		sink.close();
+		sink = new MappedLogSink(file, 1024, RING_SIZE);
+		sink.write(1L, INFO, "Tag", "after", FRAME);
+		sink.close();
+
+		final String[] lines = decode(file);
+		assertEquals(2, lines.length);
+		assertTrue(lines[0].endsWith(": before"));
+		assertTrue(lines[1].endsWith(": after"));
+		// The tag and call site are interned once, by the first process.
+		assertEquals(2, readFile(file).getInt(MappedLogSink.HEADER_STRING_COUNT));
+	}
+
+	@Test
+	public void reopeningWithAnotherLayoutClears() throws IOException {
+		final File file = mFolder.newFile();
+		MappedLogSink sink = new MappedLogSink(file, 1024, RING_SIZE);
+		sink.write(0L, INFO, "Tag", "before", FRAME);
+		sink.close();
+		sink = new MappedLogSink(file, 1024, 2 * RING_SIZE);
+		sink.write(1L, INFO, "Tag", "after", FRAME);
+		sink.close();
+
+		final String[] lines = decode(file);
+		assertEquals(1, lines.length);
+		assertTrue(lines[0].endsWith(": after"));
+	}
+
+	@Test
+	public void truncatesOnCharacterBoundaries() throws IOException {
+		final File file = mFolder.newFile();
+		final MappedLogSink sink = new MappedLogSink(file, 4096, RING_SIZE);
+		// Two bytes per character, with the tag prefix putting the string limit mid-character
+		final String tag = repeat('é', 600);
+		// Three bytes per character, longer than the largest message the ring holds
+		final String message = repeat('€', 300);
+		sink.write(0L, INFO, tag, message, null);
+		sink.close();
+
+		final String line = decode(file)[0];
+		final String decodedTag = line.substring(2, line.indexOf(' '));
+		final String decodedMessage = line.substring(line.indexOf("]: ") + 3);
+		assertTrue(decodedTag.length() > 0 && tag.startsWith(decodedTag));
+		assertTrue(decodedTag.length() < tag.length());
+		assertTrue(decodedMessage.length() > 0 && message.startsWith(decodedMessage));
+		assertTrue(decodedMessage.length() < message.length());
+	}
+
+	@Test
+	public void utf8PrefixLengthNeverSplitsCharacters() {
+		final byte[] bytes = "aé€".getBytes(MappedLogSink.UTF_8);
+		assertEquals(6, MappedLogSink.getUtf8PrefixLength(bytes, 10));
+		assertEquals(6, MappedLogSink.getUtf8PrefixLength(bytes, 6));
+		assertEquals(3, MappedLogSink.getUtf8PrefixLength(bytes, 5));
+		assertEquals(3, MappedLogSink.getUtf8PrefixLength(bytes, 4));
+		assertEquals(3, MappedLogSink.getUtf8PrefixLength(bytes, 3));
+		assertEquals(1, MappedLogSink.getUtf8PrefixLength(bytes, 2));
+		assertEquals(0, MappedLogSink.getUtf8PrefixLength(bytes, 0));
+	}
+
+	/**
+	 * Decodes the given file, dropping the time from each line since it depends on the time
+	 * zone.
+	 */
+	private static String[] decode(File file) throws IOException {
+		final StringBuilder out = new StringBuilder();
+		final int count = MappedLogDecoder.decode(file, out);
+		final String[] lines = (count == 0 ? new String[0] : out.toString().split("\n"));
+		assertEquals(count, lines.length);
+		for (int i = 0; i < count; i++) {
+			// MM-dd HH:mm:ss.SSS and a space
+			lines[i] = lines[i].substring(19);
+		}
+		return lines;
+	}
+
+	private static ByteBuffer readFile(File file) throws IOException {
+		final RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			final byte[] bytes = new byte[(int) input.length()];
+			input.readFully(bytes);
+			return ByteBuffer.wrap(bytes);
+		} finally {
+			input.close();
+		}
+	}
+
+	private static String repeat(char c, int count) {
+		final char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+}
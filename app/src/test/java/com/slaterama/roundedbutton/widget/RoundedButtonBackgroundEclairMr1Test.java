@@ -0,0 +1,239 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RoundedButtonBackgroundEclairMr1Test {
+
+	private static final int COLOR = 0xff2196f3;
+
+	private final Canvas mCanvas = new Canvas();
+	private TestButton mButton;
+	private RoundedButtonBackgroundEclairMr1 mBackground;
+	private long mFrameTimeNanos;
+
+	@Before
+	public void setUp() {
+		RoundedButtonShadowCache.clear();
+		mButton = new TestButton();
+		mBackground = new RoundedButtonBackgroundEclairMr1(mButton,
+				ColorStateList.valueOf(COLOR), TestButton.CORNER_RADIUS, TestButton.ELEVATION,
+				TestButton.MAX_ELEVATION, true);
+		final int horizontalPadding = (int) Math.ceil(TestButton.MAX_ELEVATION);
+		final int verticalPadding = (int) Math.ceil(TestButton.MAX_ELEVATION *
+				RoundedButtonBackgroundImpl.SHADOW_MULTIPLIER);
+		mBackground.setBounds(0, 0, TestButton.SIZE + 2 * horizontalPadding,
+				TestButton.SIZE + 2 * verticalPadding);
+		mBackground.draw(mCanvas);
+	}
+
+	@After
+	public void tearDown() {
+		mBackground.stopShadowAnimation();
+	}
+
+	@Test
+	public void resizeOnlyRebuildsBounds() {
+		final int boundsRebuildCount = mBackground.mBoundsRebuildCount;
+		final int shadowRebuildCount = mBackground.mShadowRebuildCount;
+		final int colorRebuildCount = mBackground.mColorRebuildCount;
+		mBackground.setBounds(0, 0, mBackground.getBounds().width() + 20,
+				mBackground.getBounds().height() + 10);
+		mBackground.draw(mCanvas);
+		assertEquals(boundsRebuildCount + 1, mBackground.mBoundsRebuildCount);
+		assertEquals(shadowRebuildCount, mBackground.mShadowRebuildCount);
+		assertEquals(colorRebuildCount, mBackground.mColorRebuildCount);
+	}
+
+	@Test
+	public void colorChangeOnlyRebuildsColor() {
+		final int boundsRebuildCount = mBackground.mBoundsRebuildCount;
+		final int shadowRebuildCount = mBackground.mShadowRebuildCount;
+		final int colorRebuildCount = mBackground.mColorRebuildCount;
+		mBackground.setColor(ColorStateList.valueOf(0xfff44336));
+		mBackground.draw(mCanvas);
+		assertEquals(boundsRebuildCount, mBackground.mBoundsRebuildCount);
+		assertEquals(shadowRebuildCount, mBackground.mShadowRebuildCount);
+		assertEquals(colorRebuildCount + 1, mBackground.mColorRebuildCount);
+	}
+
+	@Test
+	public void cleanFrameRebuildsNothing() {
+		final int boundsRebuildCount = mBackground.mBoundsRebuildCount;
+		final int shadowRebuildCount = mBackground.mShadowRebuildCount;
+		final int colorRebuildCount = mBackground.mColorRebuildCount;
+		mBackground.draw(mCanvas);
+		assertEquals(boundsRebuildCount, mBackground.mBoundsRebuildCount);
+		assertEquals(shadowRebuildCount, mBackground.mShadowRebuildCount);
+		assertEquals(colorRebuildCount, mBackground.mColorRebuildCount);
+	}
+
+	@Test
+	public void layerCacheBitmapIsReusedUntilResized() {
+		mBackground.setUseLayerCache(true);
+		mBackground.draw(mCanvas);
+		assertEquals(1, mBackground.mLayerBitmapAllocationCount);
+		final int byteCount = mBackground.getLayerCacheByteCount();
+		assertTrue(byteCount > 0);
+
+		press();
+		release();
+		mBackground.setColor(ColorStateList.valueOf(0xfff44336));
+		mBackground.draw(mCanvas);
+		assertEquals(1, mBackground.mLayerBitmapAllocationCount);
+		assertEquals(byteCount, mBackground.getLayerCacheByteCount());
+
+		mBackground.setBounds(0, 0, mBackground.getBounds().width() + 20,
+				mBackground.getBounds().height() + 10);
+		mBackground.draw(mCanvas);
+		assertEquals(2, mBackground.mLayerBitmapAllocationCount);
+
+		mBackground.setUseLayerCache(false);
+		assertEquals(0, mBackground.getLayerCacheByteCount());
+	}
+
+	@Test
+	public void shadowAnimationDoesNotPromoteToLayer() {
+		press();
+		release();
+		assertEquals(0, mButton.mAnimationStartCount);
+		assertEquals(0, mButton.mAnimationEndCount);
+	}
+
+	@Test
+	public void fillChangeOnlyInvalidatesFill() {
+		mBackground.setColor(ColorStateList.valueOf(0xfff44336));
+		assertEquals(1, mBackground.mLastInvalidatedRectCount);
+		final Rect dirty = mBackground.mLastInvalidatedRects[0];
+		final RectF button = mBackground.mButtonBounds;
+		assertTrue(dirty.left >= button.left - 1 && dirty.top >= button.top - 1);
+		assertTrue(dirty.right <= button.right + 1 && dirty.bottom <= button.bottom + 1);
+	}
+
+	@Test
+	public void elevationChangeOnlyInvalidatesShadowRing() {
+		mBackground.setState(RoundedButtonBackgroundImpl.SPECS_ENABLED_PRESSED);
+		nextFrame();
+		nextFrame();
+		final float elevation = mBackground.mVisualElevation;
+		assertTrue(elevation > TestButton.ELEVATION);
+
+		final RectF button = mBackground.mButtonBounds;
+		assertFalse(isInvalidated(button.centerX(), button.centerY()));
+		assertTrue(isInvalidated(button.left - elevation + 0.5f, button.centerY()));
+		assertTrue(isInvalidated(button.right + elevation - 0.5f, button.centerY()));
+		assertTrue(isInvalidated(button.centerX(), button.top - elevation / 2 + 0.5f));
+		assertTrue(isInvalidated(button.centerX(), button.bottom + elevation * 3 / 2 - 0.5f));
+
+		int area = 0;
+		for (int i = 0; i < mBackground.mLastInvalidatedRectCount; i++) {
+			final Rect dirty = mBackground.mLastInvalidatedRects[i];
+			area += dirty.width() * dirty.height();
+		}
+		assertTrue(area < (button.width() + 2 * elevation) * (button.height() + 2 * elevation));
+	}
+
+	@Test
+	public void keyframeAnimationBuildsNoShadows() {
+		mBackground.setUseShadowKeyframes(true);
+		// The first press builds the keyframes.
+		press();
+		release();
+
+		final long buildCount = RoundedButtonShadowCache.getBuildCount();
+		final int shadowRebuildCount = mBackground.mShadowRebuildCount;
+		final int frames = press() + release();
+		assertEquals(buildCount, RoundedButtonShadowCache.getBuildCount());
+		// Shadows are only rebuilt when the animation reaches the next keyframe.
+		assertTrue(mBackground.mShadowRebuildCount - shadowRebuildCount <
+				2 * RoundedButtonBackgroundEclairMr1.SHADOW_KEYFRAME_COUNT);
+		assertTrue(frames > 2 * RoundedButtonBackgroundEclairMr1.SHADOW_KEYFRAME_COUNT);
+	}
+
+	@Test
+	public void keyframeAnimationAllocatesNothing() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		final long threadId = Thread.currentThread().getId();
+
+		mBackground.setUseShadowKeyframes(true);
+		press();
+		release();
+
+		final long allocated = threads.getThreadAllocatedBytes(threadId);
+		press();
+		release();
+		assertEquals(0L, threads.getThreadAllocatedBytes(threadId) - allocated);
+	}
+
+	@Test
+	public void keyframeAnimationFollowsVisualElevation() {
+		mBackground.setUseShadowKeyframes(true);
+		float elevation = mBackground.mVisualElevation;
+		int steps = 0;
+		mBackground.setState(RoundedButtonBackgroundImpl.SPECS_ENABLED_PRESSED);
+		while (RoundedButtonAnimationClock.getActiveAnimationCount() > 0) {
+			final int invalidateCount = mButton.getView().getInvalidateCount();
+			nextFrame();
+			if (mBackground.mVisualElevation > elevation) {
+				// Every frame that moves the shadow redraws it, whether or not it reached a
+				// new keyframe.
+				assertTrue(mButton.getView().getInvalidateCount() > invalidateCount);
+				steps++;
+			}
+			elevation = mBackground.mVisualElevation;
+		}
+		assertEquals(TestButton.MAX_ELEVATION, mBackground.mShadowElevation, 0.0f);
+		assertTrue(steps > RoundedButtonBackgroundEclairMr1.SHADOW_KEYFRAME_COUNT);
+	}
+
+	private boolean isInvalidated(float x, float y) {
+		for (int i = 0; i < mBackground.mLastInvalidatedRectCount; i++) {
+			final Rect dirty = mBackground.mLastInvalidatedRects[i];
+			if (x >= dirty.left && x < dirty.right && y >= dirty.top && y < dirty.bottom) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int press() {
+		mBackground.setState(RoundedButtonBackgroundImpl.SPECS_ENABLED_PRESSED);
+		return runAnimation();
+	}
+
+	private int release() {
+		mBackground.setState(RoundedButtonBackgroundImpl.SPECS_DEFAULT);
+		return runAnimation();
+	}
+
+	private int runAnimation() {
+		int frames = 0;
+		while (RoundedButtonAnimationClock.getActiveAnimationCount() > 0) {
+			nextFrame();
+			frames++;
+		}
+		return frames;
+	}
+
+	private void nextFrame() {
+		mFrameTimeNanos += RoundedButtonAnimationClock.FRAME_INTERVAL_NANOS;
+		RoundedButtonAnimationClock.doFrame(mFrameTimeNanos);
+		mBackground.draw(mCanvas);
+	}
+}
@@ -0,0 +1,67 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.content.res.Resources;
+import android.view.View;
+
+/**
+ * A stand-in for a button hosting a background, with the app's resource values at xxhdpi.
+ */
+class TestButton implements RoundedButtonDelegate {
+
+	static final float DENSITY = 3.0f;
+
+	// The default floating action button, in pixels at DENSITY
+	static final int SIZE = (int) (56 * DENSITY);
+	static final float CORNER_RADIUS = 28 * DENSITY;
+	static final float ELEVATION = 2 * DENSITY;
+	static final float MAX_ELEVATION = 8 * DENSITY;
+
+	private static final Resources RESOURCES = new Resources() {
+		@Override
+		public int getInteger(int id) {
+			if (id == android.R.integer.config_shortAnimTime) {
+				return 200;
+			}
+			return super.getInteger(id);
+		}
+
+		@Override
+		public int getColor(int id) {
+			if (id == com.slaterama.roundedbutton.R.color.rounded_btn_shadow_start_color) {
+				return 0x28000000;
+			}
+			return super.getColor(id);
+		}
+
+		@Override
+		public float getDimension(int id) {
+			if (id == com.slaterama.roundedbutton.R.dimen.rounded_btn_compat_inset_shadow) {
+				return DENSITY;
+			}
+			return super.getDimension(id);
+		}
+	};
+
+	private final View mView = new View(RESOURCES);
+	int mAnimationStartCount;
+	int mAnimationEndCount;
+
+	@Override
+	public View getView() {
+		return mView;
+	}
+
+	@Override
+	public void setShadowPadding(int left, int top, int right, int bottom) {
+	}
+
+	@Override
+	public void onBackgroundAnimationStart() {
+		mAnimationStartCount++;
+	}
+
+	@Override
+	public void onBackgroundAnimationEnd() {
+		mAnimationEndCount++;
+	}
+}
@@ -0,0 +1,103 @@
+package com.slaterama.roundedbutton;
+
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import com.slaterama.roundedbutton.benchmark.DrawCounters;
+import com.slaterama.roundedbutton.benchmark.RecordingCanvas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each {@link GraphicsCompat} round rect mode drawing a single round rect and a list
+ * of {@link #BATCH_SIZE} equally sized round rects, as a list decoration would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class GraphicsCompatBenchmark {
+
+	static final int BATCH_SIZE = 64;
+
+	private static final float WIDTH = 960.0f;
+	private static final float HEIGHT = 144.0f;
+	private static final float RADIUS = 12.0f;
+
+	@Param({"arcs", "cached_path", "native"})
+	public String mode;
+
+	private final RecordingCanvas mCanvas = new RecordingCanvas();
+	private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final RectF mRect = new RectF(24.0f, 24.0f, 24.0f + WIDTH, 24.0f + HEIGHT);
+	private final float[] mRects = new float[BATCH_SIZE * GraphicsCompat.ROUND_RECT_STRIDE];
+
+	@Setup
+	public void setUp() {
+		if ("arcs".equals(mode)) {
+			GraphicsCompat.setRoundRectMode(GraphicsCompat.ROUND_RECT_MODE_ARCS);
+		} else if ("cached_path".equals(mode)) {
+			GraphicsCompat.setRoundRectMode(GraphicsCompat.ROUND_RECT_MODE_CACHED_PATH);
+		} else {
+			GraphicsCompat.setRoundRectMode(GraphicsCompat.ROUND_RECT_MODE_NATIVE);
+		}
+
+		int index = 0;
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			final float top = 24.0f + i * (HEIGHT + 8.0f);
+			mRects[index++] = 24.0f;
+			mRects[index++] = top;
+			mRects[index++] = 24.0f + WIDTH;
+			mRects[index++] = top + HEIGHT;
+			mRects[index++] = RADIUS;
+			mRects[index++] = RADIUS;
+		}
+	}
+
+	@Benchmark
+	public float drawRoundRect(DrawCounters counters) {
+		GraphicsCompat.drawRoundRect(mCanvas, mRect, RADIUS, RADIUS, mPaint);
+		return record(counters, 1);
+	}
+
+	@Benchmark
+	public float drawRoundRectFloats(DrawCounters counters) {
+		GraphicsCompat.drawRoundRect(mCanvas, mRect.left, mRect.top, mRect.right, mRect.bottom,
+				RADIUS, RADIUS, mPaint);
+		return record(counters, 1);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public float drawRoundRectLoop(DrawCounters counters) {
+		final float[] rects = mRects;
+		for (int i = 0; i < BATCH_SIZE * GraphicsCompat.ROUND_RECT_STRIDE;
+		     i += GraphicsCompat.ROUND_RECT_STRIDE) {
+			GraphicsCompat.drawRoundRect(mCanvas, rects[i], rects[i + 1], rects[i + 2],
+					rects[i + 3], rects[i + 4], rects[i + 5], mPaint);
+		}
+		return record(counters, BATCH_SIZE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public float drawRoundRects(DrawCounters counters) {
+		GraphicsCompat.drawRoundRects(mCanvas, mRects, 0, BATCH_SIZE, mPaint);
+		return record(counters, BATCH_SIZE);
+	}
+
+	private float record(DrawCounters counters, int draws) {
+		final float checksum = mCanvas.getChecksum();
+		counters.record(mCanvas, draws);
+		return checksum;
+	}
+}
@@ -0,0 +1,53 @@
+package com.slaterama.roundedbutton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost to the logging thread of an emitted {@link LogEx} call while logging
+ * asynchronously, for comparison with {@code LogExBenchmark.emittedInfo}. Records that do
+ * not fit in the buffer are handled by the overflow policy, so with the drop and sample
+ * policies part of the calls only count a dropped record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LogExAsyncBenchmark {
+
+	@Param({"drop", "block", "sample"})
+	public String policy;
+
+	@Setup
+	public void setUp() {
+		LogEx.setLogLevel(LogEx.INFO);
+		if ("block".equals(policy)) {
+			LogEx.setOverflowPolicy(LogEx.OVERFLOW_BLOCK);
+		} else if ("sample".equals(policy)) {
+			LogEx.setOverflowPolicy(LogEx.OVERFLOW_SAMPLE);
+		} else {
+			LogEx.setOverflowPolicy(LogEx.OVERFLOW_DROP);
+		}
+		LogEx.resetDroppedRecordCounts();
+		LogEx.startAsync();
+	}
+
+	@TearDown
+	public void tearDown() {
+		LogEx.stopAsync();
+		LogEx.setOverflowPolicy(LogEx.OVERFLOW_DROP);
+	}
+
+	@Benchmark
+	public int emittedInfo() {
+		return LogEx.i("Frame drawn");
+	}
+}
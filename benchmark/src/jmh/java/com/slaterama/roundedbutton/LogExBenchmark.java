@@ -0,0 +1,110 @@
+package com.slaterama.roundedbutton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LogEx} calls that are filtered out by the log level against calls that are
+ * emitted. Filtered calls should cost about as much as {@link #baseline()} and allocate
+ * nothing, the numeric arguments of {@link #filteredDebugWithFormatPair()} included.
+ * {@link #filteredPrintf()} takes an Object, which the caller boxes; escape analysis can hide
+ * that here, but not on ART. The android Log stub discards emitted records, so emitted calls
+ * measure stack capture and formatting only.
+ * {@link #emittedInfoInjected()} makes the call that the build-time call site transform
+ * rewrites {@link #emittedInfo()} into, which needs no stack.
+ * {@link #filteredDebugInjected()} looks its call site up even though it is filtered, so that
+ * the system property of its tag can lower its level.
+ * {@link #tagLoggable()} checks a tag against the cached level table, without reading system
+ * properties.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class LogExBenchmark {
+
+	private final Throwable mThrowable = new IllegalStateException("Benchmark");
+
+	private final LogEx.MessageSupplier mSupplier = new LogEx.MessageSupplier() {
+		@Override
+		public String get() {
+			return "Frame " + mFrame + " drawn";
+		}
+	};
+
+	private int mFrame = 42;
+	private float mFrameTime = 16.6f;
+
+	@Setup
+	public void setUp() {
+		LogEx.setLogLevel(LogEx.INFO);
+	}
+
+	@Benchmark
+	public int baseline() {
+		return 0;
+	}
+
+	@Benchmark
+	public int filteredDebug() {
+		return LogEx.d("Frame drawn");
+	}
+
+	@Benchmark
+	public int filteredDebugWithTag() {
+		return LogEx.d("Fab", "Frame drawn");
+	}
+
+	@Benchmark
+	public int filteredDebugWithFormat() {
+		return LogEx.d("Frame drawn in %f ms", mFrameTime);
+	}
+
+	@Benchmark
+	public int filteredDebugWithFormatPair() {
+		return LogEx.d("Frame %d drawn in %f ms", mFrame, mFrameTime);
+	}
+
+	@Benchmark
+	public int filteredPrintf() {
+		return LogEx.printf(LogEx.DEBUG, "Frame drawn in %s ms", mFrameTime);
+	}
+
+	@Benchmark
+	public int filteredDebugWithSupplier() {
+		return LogEx.d(mSupplier);
+	}
+
+	@Benchmark
+	public int filteredDebugInjected() {
+		return LogEx.Injected.d("Frame drawn",
+				"com.slaterama.roundedbutton.LogExBenchmark/filteredDebug/52/LogExBenchmark.java");
+	}
+
+	@Benchmark
+	public int filteredDebugWithThrowable() {
+		return LogEx.d("Frame dropped", mThrowable);
+	}
+
+	@Benchmark
+	public boolean tagLoggable() {
+		return LogEx.isLoggable("Fab", LogEx.DEBUG);
+	}
+
+	@Benchmark
+	public int emittedInfo() {
+		return LogEx.i("Frame drawn");
+	}
+
+	@Benchmark
+	public int emittedInfoInjected() {
+		return LogEx.Injected.i("Frame drawn",
+				"com.slaterama.roundedbutton.LogExBenchmark/emittedInfo/54/LogExBenchmark.java");
+	}
+}
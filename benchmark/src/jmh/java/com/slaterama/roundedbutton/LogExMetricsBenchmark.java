@@ -0,0 +1,53 @@
+package com.slaterama.roundedbutton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures an empty {@link LogEx} timed section and a counter, with metrics enabled and
+ * disabled. Neither should allocate. The trace stub drops sections, so the cost of emitting
+ * them while tracing is not included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class LogExMetricsBenchmark {
+
+	private static final LogEx.Section SECTION = LogEx.newSection("LogExMetricsBenchmark");
+
+	private static final LogEx.Counter COUNTER = LogEx.newCounter("LogExMetricsBenchmark");
+
+	@Param({"true", "false"})
+	public boolean enabled;
+
+	@Setup
+	public void setUp() {
+		LogEx.setMetricsEnabled(enabled);
+	}
+
+	@TearDown
+	public void tearDown() {
+		LogEx.setMetricsEnabled(false);
+		LogEx.resetMetrics();
+	}
+
+	@Benchmark
+	public void section() {
+		final long start = LogEx.beginSection(SECTION);
+		LogEx.endSection(SECTION, start);
+	}
+
+	@Benchmark
+	public void counter() {
+		LogEx.increment(COUNTER);
+	}
+}
@@ -0,0 +1,46 @@
+package com.slaterama.roundedbutton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LogEx} calls from a call site that is over its rate limit, or sampled out,
+ * for comparison with {@code LogExBenchmark.emittedInfo}. Suppressed calls still capture and
+ * resolve the call site, but are neither formatted nor written.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class LogExRateLimitBenchmark {
+
+	@Setup
+	public void setUp() {
+		LogEx.setLogLevel(LogEx.VERBOSE);
+		LogEx.setRateLimit(LogEx.DEBUG, 1.0f, 1);
+		LogEx.setSampleProbability(LogEx.VERBOSE, 0.0f);
+	}
+
+	@TearDown
+	public void tearDown() {
+		LogEx.clearRateLimits();
+		LogEx.setLogLevel(LogEx.INFO);
+	}
+
+	@Benchmark
+	public int rateLimitedDebug() {
+		return LogEx.d("Frame drawn");
+	}
+
+	@Benchmark
+	public int sampledOutVerbose() {
+		return LogEx.v("Frame drawn");
+	}
+}
@@ -0,0 +1,50 @@
+package com.slaterama.roundedbutton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a record to a {@link MappedLogSink}, which wraps around its ring many
+ * times over during a run. After the run the file is decoded, so that a file the decoder
+ * rejects fails the benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MappedLogSinkBenchmark {
+
+	private final StackTraceElement mFrame =
+			new StackTraceElement("com.example.Foo", "onDraw", "Foo.java", 42);
+
+	private File mFile;
+	private MappedLogSink mSink;
+	private long mTime;
+
+	@Setup
+	public void setUp() throws IOException {
+		mFile = File.createTempFile("logex", ".bin");
+		mSink = new MappedLogSink(mFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		mSink.close();
+		MappedLogDecoder.decode(mFile, new StringBuilder());
+		mFile.delete();
+	}
+
+	@Benchmark
+	public void write() {
+		mSink.write(mTime++, LogEx.INFO, "Foo", "onDraw(Foo.java:42) Frame drawn", mFrame);
+	}
+}
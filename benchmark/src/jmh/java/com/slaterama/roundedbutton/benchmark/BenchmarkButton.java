@@ -0,0 +1,75 @@
+package com.slaterama.roundedbutton.benchmark;
+
+import android.content.res.Resources;
+import android.view.View;
+
+import com.slaterama.roundedbutton.R;
+import com.slaterama.roundedbutton.widget.RoundedButtonDelegate;
+
+/**
+ * A stand-in for a button hosting a compat background. Resources resolve to the values in the
+ * app's resources at xxhdpi.
+ */
+public class BenchmarkButton implements RoundedButtonDelegate {
+
+	public static final float DENSITY = 3.0f;
+
+	// The default floating action button, in pixels at DENSITY
+	public static final int SIZE = (int) (56 * DENSITY);
+	public static final float CORNER_RADIUS = 28 * DENSITY;
+	public static final float ELEVATION = 2 * DENSITY;
+	public static final float MAX_ELEVATION = 8 * DENSITY;
+
+	private static final Resources RESOURCES = new Resources() {
+		@Override
+		public int getInteger(int id) {
+			if (id == android.R.integer.config_shortAnimTime) {
+				return 200;
+			}
+			return super.getInteger(id);
+		}
+
+		@Override
+		public int getColor(int id) {
+			if (id == R.color.rounded_btn_shadow_start_color) {
+				return 0x28000000;
+			} else if (id == R.color.rounded_btn_shadow_end_color) {
+				return 0x00000000;
+			}
+			return super.getColor(id);
+		}
+
+		@Override
+		public float getDimension(int id) {
+			if (id == R.dimen.rounded_btn_compat_inset_shadow) {
+				return DENSITY;
+			}
+			return super.getDimension(id);
+		}
+	};
+
+	private final View mView = new View(RESOURCES);
+	private int mPaddingSum;
+
+	@Override
+	public View getView() {
+		return mView;
+	}
+
+	@Override
+	public void setShadowPadding(int left, int top, int right, int bottom) {
+		mPaddingSum = left + top + right + bottom;
+	}
+
+	@Override
+	public void onBackgroundAnimationStart() {
+	}
+
+	@Override
+	public void onBackgroundAnimationEnd() {
+	}
+
+	public int getPaddingSum() {
+		return mPaddingSum;
+	}
+}
@@ -0,0 +1,44 @@
+package com.slaterama.roundedbutton.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results counting the canvas operations made by each benchmark. Divide
+ * {@code drawOps} or {@code stateOps} by {@code draws} for the operations per draw.
+ */
+@AuxCounters(AuxCounters.Type.EVENTS)
+@State(Scope.Thread)
+public class DrawCounters {
+	public long draws;
+	public long drawOps;
+	public long stateOps;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		draws = 0L;
+		drawOps = 0L;
+		stateOps = 0L;
+	}
+
+	/**
+	 * Adds the operations recorded by the canvas as one draw, then resets the canvas.
+	 */
+	public void record(RecordingCanvas canvas) {
+		record(canvas, 1);
+	}
+
+	/**
+	 * Adds the operations recorded by the canvas as the given number of draws, then resets the
+	 * canvas.
+	 */
+	public void record(RecordingCanvas canvas, int drawCount) {
+		draws += drawCount;
+		drawOps += canvas.getDrawOpCount();
+		stateOps += canvas.getStateOpCount();
+		canvas.reset();
+	}
+}
@@ -0,0 +1,128 @@
+package com.slaterama.roundedbutton.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * A canvas that counts the draw and state operations made on it instead of rasterizing them.
+ * Coordinates are folded into {@link #getChecksum()} so that the JIT cannot discard the work
+ * that produced them.
+ */
+public class RecordingCanvas extends Canvas {
+
+	private int mDrawOpCount;
+	private int mStateOpCount;
+	private float mChecksum;
+
+	/**
+	 * Returns the number of draw calls made since the last {@link #reset()}.
+	 */
+	public int getDrawOpCount() {
+		return mDrawOpCount;
+	}
+
+	/**
+	 * Returns the number of save, restore and transform calls made since the last
+	 * {@link #reset()}.
+	 */
+	public int getStateOpCount() {
+		return mStateOpCount;
+	}
+
+	public float getChecksum() {
+		return mChecksum;
+	}
+
+	public void reset() {
+		mDrawOpCount = 0;
+		mStateOpCount = 0;
+		mChecksum = 0.0f;
+	}
+
+	private void recordDraw(float a, float b, float c, float d) {
+		mDrawOpCount++;
+		mChecksum += a + b + c + d;
+	}
+
+	@Override
+	public int save() {
+		mStateOpCount++;
+		return super.save();
+	}
+
+	@Override
+	public void restoreToCount(int saveCount) {
+		mStateOpCount++;
+		super.restoreToCount(saveCount);
+	}
+
+	@Override
+	public void translate(float dx, float dy) {
+		mStateOpCount++;
+		mChecksum += dx + dy;
+	}
+
+	@Override
+	public void rotate(float degrees) {
+		mStateOpCount++;
+		mChecksum += degrees;
+	}
+
+	@Override
+	public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+		recordDraw(left, top, right, bottom);
+	}
+
+	@Override
+	public void drawRect(RectF rect, Paint paint) {
+		recordDraw(rect.left, rect.top, rect.right, rect.bottom);
+	}
+
+	@Override
+	public void drawRect(Rect r, Paint paint) {
+		recordDraw(r.left, r.top, r.right, r.bottom);
+	}
+
+	@Override
+	public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+		recordDraw(rect.left, rect.top, rect.right, rect.bottom);
+	}
+
+	@Override
+	public void drawRoundRect(float left, float top, float right, float bottom, float rx,
+	                          float ry, Paint paint) {
+		recordDraw(left, top, right, bottom);
+	}
+
+	@Override
+	public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+	                    Paint paint) {
+		recordDraw(oval.left, oval.top, startAngle, sweepAngle);
+	}
+
+	@Override
+	public void drawCircle(float cx, float cy, float radius, Paint paint) {
+		recordDraw(cx, cy, radius, 0.0f);
+	}
+
+	@Override
+	public void drawPath(Path path, Paint paint) {
+		recordDraw(path.getSegmentCount(), 0.0f, 0.0f, 0.0f);
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+		recordDraw(bitmap.getWidth(), bitmap.getHeight(), left, top);
+	}
+
+	@Override
+	public void drawVertices(VertexMode mode, int vertexCount, float[] verts, int vertOffset,
+	                         float[] texs, int texOffset, int[] colors, int colorOffset,
+	                         short[] indices, int indexOffset, int indexCount, Paint paint) {
+		recordDraw(vertexCount, indexCount, verts[vertOffset], verts[vertOffset + 1]);
+	}
+}
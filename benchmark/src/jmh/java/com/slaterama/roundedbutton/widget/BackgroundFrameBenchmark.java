@@ -0,0 +1,105 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.content.res.ColorStateList;
+
+import com.slaterama.roundedbutton.benchmark.BenchmarkButton;
+import com.slaterama.roundedbutton.benchmark.DrawCounters;
+import com.slaterama.roundedbutton.benchmark.RecordingCanvas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to draw one frame of a compat background at rest and while its press
+ * animation runs, and the time to recompute its shadow padding. Animation frames are driven
+ * directly through {@link RoundedButtonAnimationClock} at 60 fps, and the button is pressed
+ * and released repeatedly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BackgroundFrameBenchmark {
+
+	@Param({"default", "keyframes", "layer_cache", "mesh"})
+	public String config;
+
+	@Param({"circle", "rect"})
+	public String shape;
+
+	private final RecordingCanvas mCanvas = new RecordingCanvas();
+	private BenchmarkButton mButton;
+	private RoundedButtonBackgroundEclairMr1 mBackground;
+	private long mFrameTimeNanos;
+	private boolean mPressed;
+
+	@Setup
+	public void setUp() {
+		mButton = new BenchmarkButton();
+		final ColorStateList color = ColorStateList.valueOf(0xff2196f3);
+		if ("mesh".equals(config)) {
+			mBackground = new RoundedButtonBackgroundMesh(mButton, color,
+					BenchmarkButton.CORNER_RADIUS, BenchmarkButton.ELEVATION,
+					BenchmarkButton.MAX_ELEVATION, true);
+		} else {
+			mBackground = new RoundedButtonBackgroundEclairMr1(mButton, color,
+					BenchmarkButton.CORNER_RADIUS, BenchmarkButton.ELEVATION,
+					BenchmarkButton.MAX_ELEVATION, true);
+		}
+		mBackground.setUseShadowKeyframes("keyframes".equals(config));
+		mBackground.setUseLayerCache("layer_cache".equals(config));
+
+		final int horizontalPadding = (int) Math.ceil(BenchmarkButton.MAX_ELEVATION);
+		final int verticalPadding = (int) Math.ceil(BenchmarkButton.MAX_ELEVATION *
+				RoundedButtonBackgroundImpl.SHADOW_MULTIPLIER);
+		final int width = ("circle".equals(shape) ? BenchmarkButton.SIZE :
+				BenchmarkButton.SIZE * 3);
+		mBackground.setBounds(0, 0, width + 2 * horizontalPadding,
+				BenchmarkButton.SIZE + 2 * verticalPadding);
+		mBackground.draw(mCanvas);
+		mCanvas.reset();
+	}
+
+	@TearDown
+	public void tearDown() {
+		mBackground.stopShadowAnimation();
+	}
+
+	@Benchmark
+	public float idleFrame(DrawCounters counters) {
+		mBackground.draw(mCanvas);
+		return record(counters);
+	}
+
+	@Benchmark
+	public float animationFrame(DrawCounters counters) {
+		if (RoundedButtonAnimationClock.getActiveAnimationCount() == 0) {
+			mPressed = !mPressed;
+			mBackground.animateShadow(mPressed);
+		}
+		mFrameTimeNanos += RoundedButtonAnimationClock.FRAME_INTERVAL_NANOS;
+		RoundedButtonAnimationClock.doFrame(mFrameTimeNanos);
+		mBackground.draw(mCanvas);
+		return record(counters);
+	}
+
+	@Benchmark
+	public int invalidatePadding() {
+		mBackground.invalidatePadding();
+		return mButton.getPaddingSum();
+	}
+
+	private float record(DrawCounters counters) {
+		final float checksum = mCanvas.getChecksum();
+		counters.record(mCanvas);
+		return checksum;
+	}
+}
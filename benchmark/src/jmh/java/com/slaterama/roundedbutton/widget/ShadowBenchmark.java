@@ -0,0 +1,73 @@
+package com.slaterama.roundedbutton.widget;
+
+import android.content.res.ColorStateList;
+
+import com.slaterama.roundedbutton.benchmark.BenchmarkButton;
+import com.slaterama.roundedbutton.benchmark.DrawCounters;
+import com.slaterama.roundedbutton.benchmark.RecordingCanvas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building a compat shadow, fetching it from the shadow cache and drawing
+ * it, across a sweep of corner radii and elevations in pixels. The button is a rectangle so
+ * that the shadow is drawn as four corners and edges rather than a circle.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ShadowBenchmark {
+
+	@Param({"6", "24", "60", "84", "168"})
+	public float cornerRadius;
+
+	@Param({"3", "6", "12", "24", "48"})
+	public float elevation;
+
+	private final RecordingCanvas mCanvas = new RecordingCanvas();
+	private RoundedButtonBackgroundEclairMr1 mBackground;
+
+	@Setup
+	public void setUp() {
+		BenchmarkButton button = new BenchmarkButton();
+		mBackground = new RoundedButtonBackgroundEclairMr1(button,
+				ColorStateList.valueOf(0xff2196f3), cornerRadius, elevation, elevation, true);
+		final int width = (int) (4 * cornerRadius + 2 * elevation);
+		final int height = (int) (2 * cornerRadius + 2 * elevation * 1.5f);
+		mBackground.setBounds(0, 0, width, height);
+		// Build the bounds and the shadow.
+		mBackground.draw(mCanvas);
+		mCanvas.reset();
+	}
+
+	@Benchmark
+	public RoundedButtonShadowCache.Shadow buildShadow() {
+		return RoundedButtonShadowCache.build(cornerRadius, elevation,
+				mBackground.mInsetShadowExtra, mBackground.mShadowStartColor,
+				mBackground.mShadowEndColor);
+	}
+
+	@Benchmark
+	public RoundedButtonShadowCache.Shadow obtainShadow() {
+		return RoundedButtonShadowCache.obtain(cornerRadius, elevation,
+				mBackground.mInsetShadowExtra, mBackground.mShadowStartColor,
+				mBackground.mShadowEndColor);
+	}
+
+	@Benchmark
+	public float drawShadow(DrawCounters counters) {
+		mBackground.drawShadow(mCanvas);
+		final float checksum = mCanvas.getChecksum();
+		counters.record(mCanvas);
+		return checksum;
+	}
+}
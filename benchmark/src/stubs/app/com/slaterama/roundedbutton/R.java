@@ -0,0 +1,16 @@
+package com.slaterama.roundedbutton;
+
+/**
+ * The app resources referenced by the sources under benchmark. Values are resolved by the
+ * benchmark's {@link android.content.res.Resources}.
+ */
+public final class R {
+	public static final class color {
+		public static final int rounded_btn_shadow_start_color = 0x7f0b0001;
+		public static final int rounded_btn_shadow_end_color = 0x7f0b0002;
+	}
+
+	public static final class dimen {
+		public static final int rounded_btn_compat_inset_shadow = 0x7f0c0001;
+	}
+}
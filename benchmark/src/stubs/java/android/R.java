@@ -0,0 +1,12 @@
+package android;
+
+public final class R {
+	public static final class attr {
+		public static final int state_enabled = 0x0101009e;
+		public static final int state_pressed = 0x010100a7;
+	}
+
+	public static final class integer {
+		public static final int config_shortAnimTime = 0x010e0000;
+	}
+}
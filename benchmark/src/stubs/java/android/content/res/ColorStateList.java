@@ -0,0 +1,32 @@
+package android.content.res;
+
+public class ColorStateList {
+	private final int[][] mStateSpecs;
+	private final int[] mColors;
+
+	public ColorStateList(int[][] states, int[] colors) {
+		mStateSpecs = states;
+		mColors = colors;
+	}
+
+	public static ColorStateList valueOf(int color) {
+		return new ColorStateList(new int[][]{new int[0]}, new int[]{color});
+	}
+
+	public boolean isStateful() {
+		return mStateSpecs.length > 1;
+	}
+
+	public int getDefaultColor() {
+		return mColors[mColors.length - 1];
+	}
+
+	public int getColorForState(int[] stateSet, int defaultColor) {
+		for (int i = 0; i < mStateSpecs.length; i++) {
+			if (android.util.StateSet.stateSetMatches(mStateSpecs[i], stateSet)) {
+				return mColors[i];
+			}
+		}
+		return defaultColor;
+	}
+}
@@ -0,0 +1,51 @@
+package android.graphics;
+
+import java.util.Arrays;
+
+public final class Bitmap {
+	public enum Config {
+		ALPHA_8, RGB_565, ARGB_4444, ARGB_8888
+	}
+
+	private final int mWidth;
+	private final int mHeight;
+	private int[] mPixels;
+
+	private Bitmap(int width, int height) {
+		mWidth = width;
+		mHeight = height;
+		mPixels = new int[width * height];
+	}
+
+	public static Bitmap createBitmap(int width, int height, Config config) {
+		return new Bitmap(width, height);
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	public int getRowBytes() {
+		return mWidth * 4;
+	}
+
+	public void eraseColor(int c) {
+		Arrays.fill(mPixels, c);
+	}
+
+	public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width,
+	                      int height) {
+		for (int row = 0; row < height; row++) {
+			System.arraycopy(mPixels, (y + row) * mWidth + x, pixels, offset + row * stride,
+					width);
+		}
+	}
+
+	public void recycle() {
+		mPixels = null;
+	}
+}
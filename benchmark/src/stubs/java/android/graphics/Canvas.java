@@ -0,0 +1,98 @@
+package android.graphics;
+
+/**
+ * A canvas that tracks its save stack and discards every draw call. Benchmarks subclass it
+ * to record the draw calls they make.
+ */
+public class Canvas {
+	public enum VertexMode {
+		TRIANGLES, TRIANGLE_STRIP, TRIANGLE_FAN
+	}
+
+	private Bitmap mBitmap;
+	private int mSaveCount = 1;
+
+	public Canvas() {
+	}
+
+	public Canvas(Bitmap bitmap) {
+		mBitmap = bitmap;
+	}
+
+	public void setBitmap(Bitmap bitmap) {
+		mBitmap = bitmap;
+	}
+
+	public boolean isHardwareAccelerated() {
+		return false;
+	}
+
+	public int getWidth() {
+		return (mBitmap == null ? 0 : mBitmap.getWidth());
+	}
+
+	public int getHeight() {
+		return (mBitmap == null ? 0 : mBitmap.getHeight());
+	}
+
+	public int save() {
+		return mSaveCount++;
+	}
+
+	public void restore() {
+		if (mSaveCount > 1) {
+			mSaveCount--;
+		}
+	}
+
+	public int getSaveCount() {
+		return mSaveCount;
+	}
+
+	public void restoreToCount(int saveCount) {
+		mSaveCount = Math.max(saveCount, 1);
+	}
+
+	public void translate(float dx, float dy) {
+	}
+
+	public void rotate(float degrees) {
+	}
+
+	public void scale(float sx, float sy, float px, float py) {
+	}
+
+	public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+	}
+
+	public void drawRect(RectF rect, Paint paint) {
+	}
+
+	public void drawRect(Rect r, Paint paint) {
+	}
+
+	public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+	}
+
+	public void drawRoundRect(float left, float top, float right, float bottom, float rx, float ry,
+	                          Paint paint) {
+	}
+
+	public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+	                    Paint paint) {
+	}
+
+	public void drawCircle(float cx, float cy, float radius, Paint paint) {
+	}
+
+	public void drawPath(Path path, Paint paint) {
+	}
+
+	public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+	}
+
+	public void drawVertices(VertexMode mode, int vertexCount, float[] verts, int vertOffset,
+	                         float[] texs, int texOffset, int[] colors, int colorOffset,
+	                         short[] indices, int indexOffset, int indexCount, Paint paint) {
+	}
+}
@@ -0,0 +1,13 @@
+package android.graphics;
+
+public class LinearGradient extends Shader {
+	private final int[] mColors;
+	private final float[] mPositions;
+
+	public LinearGradient(float x0, float y0, float x1, float y1, int[] colors, float[] positions,
+	                      TileMode tile) {
+		// The framework copies the color and position arrays into the native shader.
+		mColors = colors.clone();
+		mPositions = (positions == null ? null : positions.clone());
+	}
+}
@@ -0,0 +1,94 @@
+package android.graphics;
+
+public class Paint {
+	public static final int ANTI_ALIAS_FLAG = 0x01;
+	public static final int DITHER_FLAG = 0x04;
+
+	public enum Style {
+		FILL, STROKE, FILL_AND_STROKE
+	}
+
+	private int mFlags;
+	private int mColor = 0xff000000;
+	private Style mStyle = Style.FILL;
+	private float mStrokeWidth;
+	private Shader mShader;
+	private ColorFilter mColorFilter;
+	private Xfermode mXfermode;
+
+	public Paint() {
+	}
+
+	public Paint(int flags) {
+		mFlags = flags;
+	}
+
+	public Paint(Paint paint) {
+		mFlags = paint.mFlags;
+		mColor = paint.mColor;
+		mStyle = paint.mStyle;
+		mStrokeWidth = paint.mStrokeWidth;
+		mShader = paint.mShader;
+		mColorFilter = paint.mColorFilter;
+		mXfermode = paint.mXfermode;
+	}
+
+	public int getColor() {
+		return mColor;
+	}
+
+	public void setColor(int color) {
+		mColor = color;
+	}
+
+	public int getAlpha() {
+		return mColor >>> 24;
+	}
+
+	public void setAlpha(int a) {
+		mColor = (a << 24) | (mColor & 0x00ffffff);
+	}
+
+	public Style getStyle() {
+		return mStyle;
+	}
+
+	public void setStyle(Style style) {
+		mStyle = style;
+	}
+
+	public float getStrokeWidth() {
+		return mStrokeWidth;
+	}
+
+	public void setStrokeWidth(float width) {
+		mStrokeWidth = width;
+	}
+
+	public void setDither(boolean dither) {
+		mFlags = (dither ? mFlags | DITHER_FLAG : mFlags & ~DITHER_FLAG);
+	}
+
+	public Shader getShader() {
+		return mShader;
+	}
+
+	public Shader setShader(Shader shader) {
+		mShader = shader;
+		return shader;
+	}
+
+	public ColorFilter getColorFilter() {
+		return mColorFilter;
+	}
+
+	public ColorFilter setColorFilter(ColorFilter filter) {
+		mColorFilter = filter;
+		return filter;
+	}
+
+	public Xfermode setXfermode(Xfermode xfermode) {
+		mXfermode = xfermode;
+		return xfermode;
+	}
+}
@@ -0,0 +1,73 @@
+package android.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Records path segments as floats so that building a path allocates and copies roughly as
+ * much as the framework does on the Java side. Nothing is rasterized.
+ */
+public class Path {
+	public enum FillType {
+		WINDING, EVEN_ODD, INVERSE_WINDING, INVERSE_EVEN_ODD
+	}
+
+	public enum Direction {
+		CW, CCW
+	}
+
+	private FillType mFillType = FillType.WINDING;
+	private float[] mSegments = new float[16];
+	private int mSegmentCount;
+
+	public void setFillType(FillType fillType) {
+		mFillType = fillType;
+	}
+
+	public FillType getFillType() {
+		return mFillType;
+	}
+
+	public void reset() {
+		mSegmentCount = 0;
+	}
+
+	public void moveTo(float x, float y) {
+		add(0, x, y, 0, 0, 0, 0);
+	}
+
+	public void lineTo(float x, float y) {
+		add(1, x, y, 0, 0, 0, 0);
+	}
+
+	public void arcTo(RectF oval, float startAngle, float sweepAngle, boolean forceMoveTo) {
+		add(2, oval.left, oval.top, oval.right, oval.bottom, startAngle, sweepAngle);
+	}
+
+	public void addRoundRect(RectF rect, float rx, float ry, Direction dir) {
+		add(3, rect.left, rect.top, rect.right, rect.bottom, rx, ry);
+	}
+
+	public void close() {
+		add(4, 0, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Not part of the framework. Returns the number of segments added to this path.
+	 */
+	public int getSegmentCount() {
+		return mSegmentCount / 7;
+	}
+
+	private void add(int verb, float a, float b, float c, float d, float e, float f) {
+		if (mSegmentCount + 7 > mSegments.length) {
+			mSegments = Arrays.copyOf(mSegments, mSegments.length * 2);
+		}
+		mSegments[mSegmentCount++] = verb;
+		mSegments[mSegmentCount++] = a;
+		mSegments[mSegmentCount++] = b;
+		mSegments[mSegmentCount++] = c;
+		mSegments[mSegmentCount++] = d;
+		mSegments[mSegmentCount++] = e;
+		mSegments[mSegmentCount++] = f;
+	}
+}
@@ -0,0 +1,13 @@
+package android.graphics;
+
+public class RadialGradient extends Shader {
+	private final int[] mColors;
+	private final float[] mPositions;
+
+	public RadialGradient(float centerX, float centerY, float radius, int[] colors,
+	                      float[] stops, TileMode tileMode) {
+		// The framework copies the color and stop arrays into the native shader.
+		mColors = colors.clone();
+		mPositions = (stops == null ? null : stops.clone());
+	}
+}
@@ -0,0 +1,34 @@
+package android.graphics;
+
+public final class Rect {
+	public int left;
+	public int top;
+	public int right;
+	public int bottom;
+
+	public Rect() {
+	}
+
+	public void set(int left, int top, int right, int bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public void set(Rect src) {
+		set(src.left, src.top, src.right, src.bottom);
+	}
+
+	public int width() {
+		return right - left;
+	}
+
+	public int height() {
+		return bottom - top;
+	}
+
+	public boolean isEmpty() {
+		return left >= right || top >= bottom;
+	}
+}
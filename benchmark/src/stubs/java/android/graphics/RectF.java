@@ -0,0 +1,74 @@
+package android.graphics;
+
+public class RectF {
+	public float left;
+	public float top;
+	public float right;
+	public float bottom;
+
+	public RectF() {
+	}
+
+	public RectF(float left, float top, float right, float bottom) {
+		set(left, top, right, bottom);
+	}
+
+	public void set(float left, float top, float right, float bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public void set(RectF src) {
+		set(src.left, src.top, src.right, src.bottom);
+	}
+
+	public final float width() {
+		return right - left;
+	}
+
+	public final float height() {
+		return bottom - top;
+	}
+
+	public final float centerX() {
+		return (left + right) * 0.5f;
+	}
+
+	public final float centerY() {
+		return (top + bottom) * 0.5f;
+	}
+
+	public void offset(float dx, float dy) {
+		left += dx;
+		top += dy;
+		right += dx;
+		bottom += dy;
+	}
+
+	public void inset(float dx, float dy) {
+		left += dx;
+		top += dy;
+		right -= dx;
+		bottom -= dy;
+	}
+
+	public void union(RectF r) {
+		if (r.left < r.right && r.top < r.bottom) {
+			if (left < right && top < bottom) {
+				left = Math.min(left, r.left);
+				top = Math.min(top, r.top);
+				right = Math.max(right, r.right);
+				bottom = Math.max(bottom, r.bottom);
+			} else {
+				set(r);
+			}
+		}
+	}
+
+	public void roundOut(Rect dst) {
+		dst.set((int) Math.floor(left), (int) Math.floor(top),
+				(int) Math.ceil(right), (int) Math.ceil(bottom));
+	}
+}
@@ -0,0 +1,58 @@
+package android.graphics.drawable;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Rect;
+
+public abstract class Drawable {
+	private static final int[] EMPTY_STATE = new int[0];
+
+	private final Rect mBounds = new Rect();
+	private int[] mStateSet = EMPTY_STATE;
+
+	public abstract void draw(Canvas canvas);
+
+	public abstract void setAlpha(int alpha);
+
+	public abstract void setColorFilter(ColorFilter colorFilter);
+
+	public abstract int getOpacity();
+
+	public void setBounds(int left, int top, int right, int bottom) {
+		if (mBounds.left != left || mBounds.top != top || mBounds.right != right ||
+				mBounds.bottom != bottom) {
+			mBounds.set(left, top, right, bottom);
+			onBoundsChange(mBounds);
+		}
+	}
+
+	public final Rect getBounds() {
+		return mBounds;
+	}
+
+	public boolean isStateful() {
+		return false;
+	}
+
+	public boolean setState(int[] stateSet) {
+		if (!java.util.Arrays.equals(mStateSet, stateSet)) {
+			mStateSet = stateSet;
+			return onStateChange(stateSet);
+		}
+		return false;
+	}
+
+	public int[] getState() {
+		return mStateSet;
+	}
+
+	public void invalidateSelf() {
+	}
+
+	protected void onBoundsChange(Rect bounds) {
+	}
+
+	protected boolean onStateChange(int[] state) {
+		return false;
+	}
+}
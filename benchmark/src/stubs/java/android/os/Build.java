@@ -0,0 +1,23 @@
+package android.os;
+
+public class Build {
+	public static class VERSION {
+		/**
+		 * Defaults to Ice Cream Sandwich MR1, where the compat backgrounds are used. Set the
+		 * {@code android.sdk} system property to benchmark another platform version.
+		 */
+		public static final int SDK_INT = Integer.getInteger("android.sdk",
+				VERSION_CODES.ICE_CREAM_SANDWICH_MR1);
+	}
+
+	public static class VERSION_CODES {
+		public static final int BASE = 1;
+		public static final int ECLAIR_MR1 = 7;
+		public static final int HONEYCOMB = 11;
+		public static final int ICE_CREAM_SANDWICH_MR1 = 15;
+		public static final int JELLY_BEAN = 16;
+		public static final int JELLY_BEAN_MR1 = 17;
+		public static final int KITKAT = 19;
+		public static final int LOLLIPOP = 21;
+	}
+}
@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * Posted runnables are dropped. Benchmarks drive animation frames directly.
+ */
+public class Handler {
+	public Handler(Looper looper) {
+	}
+
+	public boolean postDelayed(Runnable r, long delayMillis) {
+		return true;
+	}
+
+	public void removeCallbacks(Runnable r) {
+	}
+}
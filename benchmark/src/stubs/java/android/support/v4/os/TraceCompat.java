@@ -0,0 +1,15 @@
+package android.support.v4.os;
+
+/**
+ * Trace sections are dropped. Benchmarks measure the cost of the calls around them.
+ */
+public final class TraceCompat {
+	private TraceCompat() {
+	}
+
+	public static void beginSection(String sectionName) {
+	}
+
+	public static void endSection() {
+	}
+}
@@ -0,0 +1,4 @@
+package android.support.v4.view;
+
+public class ViewCompat {
+}
@@ -0,0 +1,14 @@
+package android.text;
+
+public class TextUtils {
+	public static boolean isEmpty(CharSequence str) {
+		return str == null || str.length() == 0;
+	}
+
+	public static boolean equals(CharSequence a, CharSequence b) {
+		if (a == b) {
+			return true;
+		}
+		return a != null && b != null && a.toString().equals(b.toString());
+	}
+}
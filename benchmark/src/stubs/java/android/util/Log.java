@@ -0,0 +1,55 @@
+package android.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Discards every message. Benchmarks measure the cost of preparing log records, not of
+ * writing them.
+ */
+public final class Log {
+	public static final int VERBOSE = 2;
+	public static final int DEBUG = 3;
+	public static final int INFO = 4;
+	public static final int WARN = 5;
+	public static final int ERROR = 6;
+	public static final int ASSERT = 7;
+
+	// Stands in for the log.tag system properties
+	private static final ConcurrentHashMap<String, Integer> sTagLevels =
+			new ConcurrentHashMap<String, Integer>();
+
+	private Log() {
+	}
+
+	public static boolean isLoggable(String tag, int level) {
+		final Integer tagLevel = sTagLevels.get(tag);
+		return level >= (tagLevel == null ? INFO : tagLevel);
+	}
+
+	/**
+	 * Stands in for 'setprop log.tag.&lt;tag> &lt;level>', or clears the property if level is
+	 * null. Not part of the android API.
+	 */
+	public static void setTagLevel(String tag, Integer level) {
+		if (level == null) {
+			sTagLevels.remove(tag);
+		} else {
+			sTagLevels.put(tag, level);
+		}
+	}
+
+	public static String getStackTraceString(Throwable tr) {
+		if (tr == null) {
+			return "";
+		}
+		StringWriter sw = new StringWriter();
+		tr.printStackTrace(new PrintWriter(sw));
+		return sw.toString();
+	}
+
+	public static int println(int priority, String tag, String msg) {
+		return tag.length() + msg.length();
+	}
+}
@@ -0,0 +1,21 @@
+package android.util;
+
+public class StateSet {
+	public static boolean stateSetMatches(int[] stateSpec, int[] stateSet) {
+		for (int stateSpecState : stateSpec) {
+			boolean mustMatch = stateSpecState > 0;
+			int state = (mustMatch ? stateSpecState : -stateSpecState);
+			boolean found = false;
+			for (int stateSetState : stateSet) {
+				if (stateSetState == state) {
+					found = true;
+					break;
+				}
+			}
+			if (found != mustMatch) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
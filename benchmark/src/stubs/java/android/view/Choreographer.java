@@ -0,0 +1,22 @@
+package android.view;
+
+/**
+ * Posted frame callbacks are dropped. Benchmarks drive animation frames directly.
+ */
+public class Choreographer {
+	private static final Choreographer sInstance = new Choreographer();
+
+	public interface FrameCallback {
+		void doFrame(long frameTimeNanos);
+	}
+
+	public static Choreographer getInstance() {
+		return sInstance;
+	}
+
+	public void postFrameCallback(FrameCallback callback) {
+	}
+
+	public void removeFrameCallback(FrameCallback callback) {
+	}
+}
@@ -0,0 +1,57 @@
+package android.view;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+
+public class View {
+	private final Resources mResources;
+	private Drawable mBackground;
+	private int mInvalidateCount;
+
+	public View(Resources resources) {
+		mResources = resources;
+	}
+
+	public Resources getResources() {
+		return mResources;
+	}
+
+	public Drawable getBackground() {
+		return mBackground;
+	}
+
+	public void setBackground(Drawable background) {
+		mBackground = background;
+	}
+
+	@Deprecated
+	public void setBackgroundDrawable(Drawable background) {
+		setBackground(background);
+	}
+
+	public int getScrollX() {
+		return 0;
+	}
+
+	public int getScrollY() {
+		return 0;
+	}
+
+	public void invalidate() {
+		mInvalidateCount++;
+	}
+
+	public void invalidate(int l, int t, int r, int b) {
+		mInvalidateCount++;
+	}
+
+	public void requestLayout() {
+	}
+
+	/**
+	 * Not part of the framework. Returns the number of invalidate calls made on this view.
+	 */
+	public int getInvalidateCount() {
+		return mInvalidateCount;
+	}
+}
@@ -0,0 +1,19 @@
+package com.slaterama.roundedbutton.build;
+
+import com.android.build.gradle.BaseExtension;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+
+/**
+ * Registers {@link LogExCallSiteTransform} with the Android plugin of the project it is
+ * applied to, which must already have been applied.
+ */
+public class LogExCallSitePlugin implements Plugin<Project> {
+
+	@Override
+	public void apply(Project project) {
+		project.getExtensions().getByType(BaseExtension.class)
+				.registerTransform(new LogExCallSiteTransform());
+	}
+}
@@ -0,0 +1,140 @@
+package com.slaterama.roundedbutton.build;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Rewrites calls to the LogEx logging methods that do not take a Throwable into calls to the
+ * matching LogEx.Injected methods, passing the call site as a constant site string so that
+ * LogEx does not need to capture the stack.
+ */
+public final class LogExCallSiteRewriter {
+
+	static final String LOG_EX = "com/slaterama/roundedbutton/LogEx";
+	static final String INJECTED = LOG_EX + "$Injected";
+
+	private static final Set<String> METHOD_NAMES =
+			new HashSet<String>(Arrays.asList("v", "d", "i", "w", "e"));
+
+	// The descriptors of the level methods that LogEx.Injected has an overload for, with a site
+	// string appended.
+	static final Set<String> METHOD_DESCRIPTORS = new HashSet<String>(Arrays.asList(
+			"()I",
+			"(Ljava/lang/String;)I",
+			"(Ljava/lang/String;Ljava/lang/String;)I",
+			"(Ljava/lang/String;J)I",
+			"(Ljava/lang/String;D)I",
+			"(Ljava/lang/String;JJ)I",
+			"(Ljava/lang/String;JD)I",
+			"(Ljava/lang/String;DJ)I",
+			"(Ljava/lang/String;DD)I",
+			"(L" + LOG_EX + "$MessageSupplier;)I"));
+
+	static final String PRINTF = "printf";
+
+	// The descriptors of the printf methods that LogEx.Injected has an overload for.
+	static final Set<String> PRINTF_DESCRIPTORS = new HashSet<String>(Arrays.asList(
+			"(ILjava/lang/String;Ljava/lang/Object;)I",
+			"(ILjava/lang/String;Ljava/lang/Object;Ljava/lang/Object;)I"));
+
+	private LogExCallSiteRewriter() {
+	}
+
+	/**
+	 * Returns the given class with its LogEx calls rewritten, or the same array if it has
+	 * none.
+	 */
+	public static byte[] rewrite(byte[] classBytes) {
+		final ClassReader reader = new ClassReader(classBytes);
+		final String className = reader.getClassName();
+		if (className.equals(LOG_EX) || className.startsWith(LOG_EX + "$")) {
+			return classBytes;
+		}
+		final ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		final CallSiteClassVisitor visitor = new CallSiteClassVisitor(writer);
+		reader.accept(visitor, 0);
+		return (visitor.mRewritten ? writer.toByteArray() : classBytes);
+	}
+
+	/**
+	 * Returns whether a call to the LogEx method with the given name and descriptor is
+	 * rewritten.
+	 */
+	static boolean isRewritten(String name, String desc) {
+		return (METHOD_NAMES.contains(name) && METHOD_DESCRIPTORS.contains(desc)) ||
+				(PRINTF.equals(name) && PRINTF_DESCRIPTORS.contains(desc));
+	}
+
+	/**
+	 * Returns the site string for a call made from the given class and method, in the format
+	 * documented by LogEx.Injected.
+	 */
+	static String getSite(String internalClassName, String methodName, int lineNumber,
+	                      String fileName) {
+		return internalClassName.replace('/', '.') + '/' + methodName + '/' + lineNumber + '/' +
+				(fileName == null ? "" : fileName);
+	}
+
+	private static class CallSiteClassVisitor extends ClassVisitor {
+		private String mClassName;
+		private String mSourceFile;
+		private boolean mRewritten;
+
+		CallSiteClassVisitor(ClassVisitor cv) {
+			super(Opcodes.ASM5, cv);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature,
+		                  String superName, String[] interfaces) {
+			mClassName = name;
+			super.visit(version, access, name, signature, superName, interfaces);
+		}
+
+		@Override
+		public void visitSource(String source, String debug) {
+			mSourceFile = source;
+			super.visitSource(source, debug);
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, final String methodName, String desc,
+		                                 String signature, String[] exceptions) {
+			final MethodVisitor mv = super.visitMethod(access, methodName, desc, signature,
+					exceptions);
+			return new MethodVisitor(Opcodes.ASM5, mv) {
+				// Line numbers are visited before the instructions they cover.
+				private int mLineNumber = -1;
+
+				@Override
+				public void visitLineNumber(int line, Label start) {
+					mLineNumber = line;
+					super.visitLineNumber(line, start);
+				}
+
+				@Override
+				public void visitMethodInsn(int opcode, String owner, String name, String desc,
+				                            boolean itf) {
+					if (opcode == Opcodes.INVOKESTATIC && LOG_EX.equals(owner) &&
+							isRewritten(name, desc)) {
+						super.visitLdcInsn(getSite(mClassName, methodName, mLineNumber,
+								mSourceFile));
+						super.visitMethodInsn(Opcodes.INVOKESTATIC, INJECTED, name,
+								desc.replace(")", "Ljava/lang/String;)"), false);
+						mRewritten = true;
+					} else {
+						super.visitMethodInsn(opcode, owner, name, desc, itf);
+					}
+				}
+			};
+		}
+	}
+}
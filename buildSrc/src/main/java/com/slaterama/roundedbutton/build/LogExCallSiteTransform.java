@@ -0,0 +1,145 @@
+package com.slaterama.roundedbutton.build;
+
+import com.android.build.api.transform.DirectoryInput;
+import com.android.build.api.transform.Format;
+import com.android.build.api.transform.JarInput;
+import com.android.build.api.transform.QualifiedContent;
+import com.android.build.api.transform.Transform;
+import com.android.build.api.transform.TransformException;
+import com.android.build.api.transform.TransformInput;
+import com.android.build.api.transform.TransformInvocation;
+import com.android.build.api.transform.TransformOutputProvider;
+import com.android.build.gradle.internal.pipeline.TransformManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Runs {@link LogExCallSiteRewriter} over the classes of the project.
+ */
+public class LogExCallSiteTransform extends Transform {
+
+	@Override
+	public String getName() {
+		return "logExCallSites";
+	}
+
+	@Override
+	public Set<QualifiedContent.ContentType> getInputTypes() {
+		return TransformManager.CONTENT_CLASS;
+	}
+
+	@Override
+	public Set<QualifiedContent.Scope> getScopes() {
+		return EnumSet.of(QualifiedContent.Scope.PROJECT);
+	}
+
+	@Override
+	public boolean isIncremental() {
+		return false;
+	}
+
+	@Override
+	public void transform(TransformInvocation invocation)
+			throws TransformException, InterruptedException, IOException {
+		final TransformOutputProvider outputProvider = invocation.getOutputProvider();
+		outputProvider.deleteAll();
+		for (TransformInput input : invocation.getInputs()) {
+			for (DirectoryInput directoryInput : input.getDirectoryInputs()) {
+				File output = outputProvider.getContentLocation(directoryInput.getName(),
+						directoryInput.getContentTypes(), directoryInput.getScopes(),
+						Format.DIRECTORY);
+				transformDirectory(directoryInput.getFile(), output);
+			}
+			for (JarInput jarInput : input.getJarInputs()) {
+				File output = outputProvider.getContentLocation(jarInput.getName(),
+						jarInput.getContentTypes(), jarInput.getScopes(), Format.JAR);
+				transformJar(jarInput.getFile(), output);
+			}
+		}
+	}
+
+	private static void transformDirectory(File input, File output) throws IOException {
+		final File[] files = input.listFiles();
+		if (files == null) {
+			return;
+		}
+		if (!output.isDirectory() && !output.mkdirs()) {
+			throw new IOException("Could not create " + output);
+		}
+		for (File file : files) {
+			final File outputFile = new File(output, file.getName());
+			if (file.isDirectory()) {
+				transformDirectory(file, outputFile);
+			} else {
+				byte[] bytes = readFully(new FileInputStream(file));
+				if (file.getName().endsWith(".class")) {
+					bytes = LogExCallSiteRewriter.rewrite(bytes);
+				}
+				write(bytes, new FileOutputStream(outputFile));
+			}
+		}
+	}
+
+	private static void transformJar(File input, File output) throws IOException {
+		if (!output.getParentFile().isDirectory() && !output.getParentFile().mkdirs()) {
+			throw new IOException("Could not create " + output.getParentFile());
+		}
+		final ZipInputStream in = new ZipInputStream(new FileInputStream(input));
+		try {
+			final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(output));
+			try {
+				ZipEntry entry;
+				while ((entry = in.getNextEntry()) != null) {
+					byte[] bytes = readEntry(in);
+					if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+						bytes = LogExCallSiteRewriter.rewrite(bytes);
+					}
+					out.putNextEntry(new ZipEntry(entry.getName()));
+					out.write(bytes);
+					out.closeEntry();
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		try {
+			return readEntry(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readEntry(InputStream in) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int count;
+		while ((count = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, count);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void write(byte[] bytes, OutputStream out) throws IOException {
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+}
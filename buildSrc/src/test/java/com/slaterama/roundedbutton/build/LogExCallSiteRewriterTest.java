@@ -0,0 +1,217 @@
+package com.slaterama.roundedbutton.build;
+
+import com.slaterama.roundedbutton.LogEx;
+import com.slaterama.roundedbutton.LogSink;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LogExCallSiteRewriterTest {
+
+	private static final String SAMPLE = LogExCallSiteSample.class.getName();
+	private static final List<String> LEVEL_NAMES = Arrays.asList("v", "d", "i", "w", "e");
+
+	private final List<String> mRecords = new ArrayList<String>();
+	private final LogSink mSink = new LogSink() {
+		@Override
+		public void write(long timeMillis, int priority, String tag, String msg,
+		                  StackTraceElement frame) {
+			mRecords.add(priority + " " + tag + " " + msg + " " + (frame == null ? null :
+					frame.getClassName() + "/" + frame.getMethodName() + "/" +
+							frame.getLineNumber() + "/" + frame.getFileName()));
+		}
+	};
+
+	@Before
+	public void setUp() {
+		LogEx.setLogLevel(LogEx.VERBOSE);
+		LogEx.addSink(mSink);
+	}
+
+	@After
+	public void tearDown() {
+		LogEx.removeSink(mSink);
+		LogEx.setLogLevel(LogEx.INFO);
+	}
+
+	@Test
+	public void rewrittenSampleLogsTheSameRecords() throws Exception {
+		final List<String> original = runSample(false);
+		final List<String> rewritten = runSample(true);
+
+		assertEquals(11, original.size());
+		assertEquals(original, rewritten);
+	}
+
+	@Test
+	public void rewritesCallsWithoutThrowable() throws IOException {
+		final byte[] original = readClass(SAMPLE);
+		final byte[] rewritten = LogExCallSiteRewriter.rewrite(original);
+
+		assertNotSame(original, rewritten);
+		final String text = new String(rewritten, Charset.forName("ISO-8859-1"));
+		assertTrue(text.contains(LogExCallSiteRewriter.INJECTED));
+		assertTrue(text.contains(LogExCallSiteRewriter.getSite(
+				SAMPLE.replace('.', '/'), "run", 26, "LogExCallSiteSample.java")));
+	}
+
+	@Test
+	public void leavesClassesWithoutCallsAlone() throws IOException {
+		final byte[] original = readClass(LogExCallSiteRewriterTest.class.getName() + "$1");
+		assertSame(original, LogExCallSiteRewriter.rewrite(original));
+
+		final byte[] logEx = readClass(LogEx.class.getName());
+		assertSame(logEx, LogExCallSiteRewriter.rewrite(logEx));
+	}
+
+	@Test
+	public void everyRewrittenMethodHasAnInjectedOverload() throws NoSuchMethodException {
+		for (Method method : LogEx.Injected.class.getDeclaredMethods()) {
+			if (isLoggingMethod(method)) {
+				final Class<?>[] types = method.getParameterTypes();
+				assertEquals(method.toString(), String.class, types[types.length - 1]);
+				final String descriptor = Type.getMethodDescriptor(
+						LogEx.class.getMethod(method.getName(),
+								Arrays.copyOf(types, types.length - 1)));
+				assertTrue(method.toString(),
+						LogExCallSiteRewriter.isRewritten(method.getName(), descriptor));
+			}
+		}
+		for (Method method : LogEx.class.getDeclaredMethods()) {
+			if (isLoggingMethod(method) && !hasThrowable(method)) {
+				final Class<?>[] types = Arrays.copyOf(method.getParameterTypes(),
+						method.getParameterTypes().length + 1);
+				types[types.length - 1] = String.class;
+				LogEx.Injected.class.getMethod(method.getName(), types);
+				assertTrue(method.toString(), LogExCallSiteRewriter.isRewritten(
+						method.getName(), Type.getMethodDescriptor(method)));
+			}
+		}
+		for (String name : LEVEL_NAMES) {
+			for (String descriptor : LogExCallSiteRewriter.METHOD_DESCRIPTORS) {
+				LogEx.class.getMethod(name, toClasses(Type.getArgumentTypes(descriptor)));
+			}
+		}
+		for (String descriptor : LogExCallSiteRewriter.PRINTF_DESCRIPTORS) {
+			LogEx.class.getMethod(LogExCallSiteRewriter.PRINTF,
+					toClasses(Type.getArgumentTypes(descriptor)));
+		}
+	}
+
+	private List<String> runSample(boolean rewrite) throws Exception {
+		mRecords.clear();
+		final ClassLoader loader = new SampleClassLoader(rewrite);
+		loader.loadClass(SAMPLE).getMethod("run").invoke(null);
+		return new ArrayList<String>(mRecords);
+	}
+
+	private static boolean isLoggingMethod(Method method) {
+		return Modifier.isPublic(method.getModifiers()) &&
+				Modifier.isStatic(method.getModifiers()) &&
+				(LEVEL_NAMES.contains(method.getName()) ||
+						method.getName().equals(LogExCallSiteRewriter.PRINTF));
+	}
+
+	private static boolean hasThrowable(Method method) {
+		for (Class<?> type : method.getParameterTypes()) {
+			if (Throwable.class.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Class<?>[] toClasses(Type[] types) {
+		final Class<?>[] classes = new Class<?>[types.length];
+		for (int i = 0; i < types.length; i++) {
+			switch (types[i].getSort()) {
+				case Type.INT:
+					classes[i] = int.class;
+					break;
+				case Type.LONG:
+					classes[i] = long.class;
+					break;
+				case Type.DOUBLE:
+					classes[i] = double.class;
+					break;
+				default:
+					try {
+						classes[i] = Class.forName(types[i].getClassName());
+					} catch (ClassNotFoundException e) {
+						throw new AssertionError(e);
+					}
+			}
+		}
+		return classes;
+	}
+
+	private static byte[] readClass(String name) throws IOException {
+		final InputStream in = LogExCallSiteRewriterTest.class.getClassLoader()
+				.getResourceAsStream(name.replace('.', '/') + ".class");
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Loads the sample and its inner classes itself, rewritten or not, and everything else,
+	 * including LogEx, from its parent.
+	 */
+	private static class SampleClassLoader extends ClassLoader {
+		private final boolean mRewrite;
+
+		SampleClassLoader(boolean rewrite) {
+			super(LogExCallSiteRewriterTest.class.getClassLoader());
+			mRewrite = rewrite;
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve)
+				throws ClassNotFoundException {
+			if (!name.equals(SAMPLE) && !name.startsWith(SAMPLE + "$")) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				try {
+					byte[] bytes = readClass(name);
+					if (mRewrite) {
+						bytes = LogExCallSiteRewriter.rewrite(bytes);
+					}
+					c = defineClass(name, bytes, 0, bytes.length);
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+			}
+			if (resolve) {
+				resolveClass(c);
+			}
+			return c;
+		}
+	}
+}
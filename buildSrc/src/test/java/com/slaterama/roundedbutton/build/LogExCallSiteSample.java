@@ -0,0 +1,43 @@
+package com.slaterama.roundedbutton.build;
+
+import com.slaterama.roundedbutton.LogEx;
+
+/**
+ * Makes one call to each LogEx overload, for {@link LogExCallSiteRewriterTest} to run with and
+ * without its call sites rewritten.
+ */
+public class LogExCallSiteSample {
+
+	private static final LogEx.MessageSupplier SUPPLIER = new LogEx.MessageSupplier() {
+		@Override
+		public String get() {
+			return "supplied";
+		}
+	};
+
+	// Without a stack, so that its trace is the same from wherever the sample is run.
+	private static final Throwable THROWABLE = new IllegalStateException();
+
+	static {
+		THROWABLE.setStackTrace(new StackTraceElement[0]);
+	}
+
+	public static void run() {
+		LogEx.v();
+		LogEx.d("message");
+		LogEx.i("Tag", "tagged");
+		LogEx.w("%d items", 3L);
+		LogEx.e("%.1f ratio", 2.5);
+		LogEx.d("%d of %.1f", 3, 2.5f);
+		LogEx.printf(LogEx.DEBUG, "%s and %s", "one", 2);
+		LogEx.printf(LogEx.WARN, "name=%s", "sample");
+		LogEx.v(SUPPLIER);
+		LogEx.w("thrown", THROWABLE);
+		new Runnable() {
+			@Override
+			public void run() {
+				LogEx.i("from an inner class");
+			}
+		}.run();
+	}
+}